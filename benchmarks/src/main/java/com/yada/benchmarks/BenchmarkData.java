@@ -0,0 +1,41 @@
+package com.yada.benchmarks;
+
+import com.yada.utils.DatasetGenerator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// Shared fixtures: every benchmark draws its data from a DatasetGenerator with a fixed seed
+final class BenchmarkData {
+    private BenchmarkData() {}
+
+    // A catalog of foods basic foods plus one composite per ten, nested three levels deep
+    static DatasetGenerator generator(int foods) {
+        DatasetGenerator generator = new DatasetGenerator();
+        generator.setBasicFoods(foods);
+        generator.setCompositeFoods(foods / 10);
+        generator.setVocabulary(Math.max(foods / 20, 64));
+        return generator;
+    }
+
+    static Path tempDir() {
+        try {
+            return Files.createTempDirectory("yada-bench");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static void delete(Path dir) {
+        if (dir == null) return;
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.yada.benchmarks;
+
+import com.yada.models.CompositeFood;
+import com.yada.models.Food;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Calories of a composite nested depth levels deep: level 1 is two basic foods and each
+// further level is the level below plus one basic food
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompositeFoodBenchmark {
+    @Param({"1", "4", "16", "64"})
+    public int depth;
+
+    private Food leaf;
+    private CompositeFood top;
+    private int calories = 100;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        leaf = new Food("leaf", List.of("bench"), calories);
+        CompositeFood level = new CompositeFood("level1", List.of("bench"));
+        level.addComponent(leaf, 1);
+        level.addComponent(new Food("side1", List.of("bench"), 50), 2);
+        for (int d = 2; d <= depth; d++) {
+            CompositeFood next = new CompositeFood("level" + d, List.of("bench"));
+            next.addComponent(level, 1);
+            next.addComponent(new Food("side" + d, List.of("bench"), 50), 1);
+            level = next;
+        }
+        top = level;
+    }
+
+    // Repeated reads with nothing changed
+    @Benchmark
+    public int cachedCalories() {
+        return top.getCaloriesPerServing();
+    }
+
+    // A change at the bottom invalidates every level, so the read recomputes all of them
+    @Benchmark
+    public int caloriesAfterLeafChange() {
+        calories = calories == 100 ? 101 : 100;
+        leaf.setCaloriesPerServing(calories);
+        return top.getCaloriesPerServing();
+    }
+}
@@ -0,0 +1,82 @@
+package com.yada.benchmarks;
+
+import com.yada.models.Food;
+import com.yada.services.FoodDatabase;
+import com.yada.services.SearchPage;
+import com.yada.services.TypeaheadIndex;
+import com.yada.utils.DatasetGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Id lookups, keyword searches (full and ranked top 10) and type-ahead suggestions against catalogs of increasing size
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FoodDatabaseBenchmark {
+    private static final int QUERIES = 1024;
+
+    @Param({"1000", "100000"})
+    public int foods;
+
+    private FoodDatabase database;
+    private String[] ids;
+    private List<List<String>> queries;
+    private String[] partials;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DatasetGenerator generator = BenchmarkData.generator(foods);
+        database = new FoodDatabase();
+        database.addFoods(generator.buildFoods());
+
+        // Lookups and searches follow the generator's popularity and keyword skew
+        Random random = new Random(7);
+        ids = new String[QUERIES];
+        partials = new String[QUERIES];
+        queries = new ArrayList<>(QUERIES);
+        for (int i = 0; i < QUERIES; i++) {
+            ids[i] = generator.foodId(generator.sampleFood(random));
+            queries.add(List.of(generator.sampleKeyword(random), generator.sampleKeyword(random)));
+            // Half are cut-off ids, half also miss a character
+            String partial = ids[i].substring(0, 2 + random.nextInt(ids[i].length() - 1));
+            if (i % 2 == 1 && partial.length() > 4) {
+                int drop = random.nextInt(partial.length());
+                partial = partial.substring(0, drop) + partial.substring(drop + 1);
+            }
+            partials[i] = partial;
+        }
+    }
+
+    @Benchmark
+    public Food findFoodById() {
+        return database.findFoodById(ids[next++ & (QUERIES - 1)]);
+    }
+
+    @Benchmark
+    public List<Food> searchFoodsMatchAll() {
+        return database.searchFoods(queries.get(next++ & (QUERIES - 1)), true);
+    }
+
+    @Benchmark
+    public List<Food> searchFoodsMatchAny() {
+        return database.searchFoods(queries.get(next++ & (QUERIES - 1)), false);
+    }
+
+    @Benchmark
+    public List<TypeaheadIndex.Suggestion> suggest() {
+        return database.suggest(partials[next++ & (QUERIES - 1)], 10);
+    }
+
+    @Benchmark
+    public SearchPage searchRankedMatchAny() {
+        return database.searchRanked(queries.get(next++ & (QUERIES - 1)), false, 10, null);
+    }
+}
@@ -0,0 +1,54 @@
+package com.yada.benchmarks;
+
+import com.yada.services.FoodCSVImporter;
+import com.yada.services.FoodDatabase;
+import com.yada.services.FoodJSONImporter;
+import com.yada.services.ImportResult;
+import com.yada.utils.DatasetGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+// Unattended CSV and JSON imports into an empty catalog, with the mapping auto-detected
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ImporterBenchmark {
+    @Param({"1000", "100000"})
+    public int rows;
+
+    private Path dir;
+    private String csvFile;
+    private String jsonFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir();
+        csvFile = dir.resolve("foods.csv").toString();
+        jsonFile = dir.resolve("foods.json").toString();
+        DatasetGenerator generator = BenchmarkData.generator(rows);
+        generator.setImportRows(rows);
+        generator.writeCsv(dir.resolve("foods.csv"));
+        generator.writeJson(dir.resolve("foods.json"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public ImportResult importCsv() {
+        return new FoodCSVImporter().importFoods(csvFile, new FoodDatabase(), null);
+    }
+
+    @Benchmark
+    public ImportResult importJson() {
+        return new FoodJSONImporter().importFoods(jsonFile, new FoodDatabase(), null);
+    }
+}
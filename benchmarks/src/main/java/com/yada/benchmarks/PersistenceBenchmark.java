@@ -0,0 +1,107 @@
+package com.yada.benchmarks;
+
+import com.yada.models.Food;
+import com.yada.models.LogEntry;
+import com.yada.services.FoodDatabase;
+import com.yada.services.LogManager;
+import com.yada.services.ListLogStore;
+import com.yada.utils.DatasetGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Full loads of the food and log segments, and saves after a single change. The log is
+// sized by days of history at a fixed number of entries per day, over a fixed catalog.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PersistenceBenchmark {
+    private static final int ENTRIES_PER_DAY = 8;
+
+    @Param({"1000", "100000"})
+    public int foods;
+
+    @Param({"365", "3650"})
+    public int days;
+
+    private Path dir;
+    private FoodDatabase database;
+    private LogManager logManager;
+    private Food loggedFood;
+    // The food or entry the previous op added, which the next one removes again
+    private Food benchFood;
+    private LogEntry benchEntry;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = BenchmarkData.tempDir();
+        DatasetGenerator generator = BenchmarkData.generator(foods);
+        generator.setDays(days);
+        generator.setEntriesPerDay(ENTRIES_PER_DAY);
+        generator.writeFoods(dir.resolve("foods.txt"));
+        generator.writeLog(dir.resolve("log.txt"));
+
+        database = new FoodDatabase(dir.resolve("foods.txt").toString());
+        database.loadFoods();
+        logManager = new LogManager(new ListLogStore(), dir.resolve("log.txt").toString());
+        logManager.loadLogs(database);
+        // Move the generated text files into segments, as the first save does
+        database.saveFoods();
+        logManager.saveLogs();
+        loggedFood = database.findFoodById(generator.foodId(0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        BenchmarkData.delete(dir);
+    }
+
+    @Benchmark
+    public FoodDatabase loadFoods() {
+        FoodDatabase loaded = new FoodDatabase(dir.resolve("foods.txt").toString());
+        loaded.loadFoods();
+        return loaded;
+    }
+
+    // Ops alternate between adding one food and removing it again, so the catalog stays at its
+    // @Param size and each op rewrites just that food's bucket
+    @Benchmark
+    public void saveFoods() {
+        if (benchFood == null) {
+            benchFood = new Food("bench food", List.of("bench"), 100);
+            database.addBasicFood(benchFood);
+        } else {
+            database.removeFood(benchFood);
+            benchFood = null;
+        }
+        database.saveFoods();
+    }
+
+    @Benchmark
+    public LogManager loadLogs() {
+        LogManager loaded = new LogManager(new ListLogStore(), dir.resolve("log.txt").toString());
+        loaded.loadLogs(database);
+        return loaded;
+    }
+
+    // Without a journal, saveLogs writes the changed month only. As with foods, ops alternate
+    // between adding an entry and deleting it, so the month keeps its generated size.
+    @Benchmark
+    public void saveLogs() {
+        LocalDate date = LocalDate.of(2020, 1, 1);
+        if (benchEntry == null) {
+            benchEntry = logManager.addLogEntry(date, new LogEntry(loggedFood, 1));
+        } else {
+            logManager.deleteLogEntryById(date.toString(), benchEntry.getId());
+            benchEntry = null;
+        }
+        logManager.saveLogs();
+    }
+}
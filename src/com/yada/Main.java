@@ -1,13 +1,22 @@
 package com.yada;
 
 import com.yada.models.*;
+import com.yada.server.YadaServer;
 import com.yada.services.*;
 import com.yada.utils.*;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 public class Main {
     private static FoodDatabase foodDatabase = new FoodDatabase();
@@ -17,11 +26,79 @@ public class Main {
     // Default to Method One. User can switch later.
     private static DietGoalCalculator dietGoalCalculator = new MethodOneCalculator();
     private static String currentDate = LocalDate.now().toString();
+    private static ImportProfileStore importProfiles = new ImportProfileStore();
+    private static SnapshotStore snapshotStore = new SnapshotStore();
+    // Background saves of foods and logs; null when disabled with --autosave-ms 0
+    private static AutosaveScheduler autosave;
 
     public static void main(String[] args) {
-        // Load foods and logs from files
-        foodDatabase.loadFoods();
-        logManager.loadLogs(foodDatabase);
+        // --columnar keeps the log in primitive columns instead of LogEntry objects
+        if (List.of(args).contains("--columnar")) {
+            logManager = new LogManager(new ColumnarLogStore());
+        }
+        importProfiles.loadProfiles();
+        // Unattended catalog refresh: --import <profile|auto> <file>...
+        if (args.length > 0 && args[0].equals("--import")) {
+            runBatchImport(args);
+            return;
+        }
+
+        // Load foods and logs, from the binary snapshot when it matches the text files
+        if (!snapshotStore.load(foodDatabase, logManager)) {
+            foodDatabase.loadFoods();
+            logManager.loadLogs(foodDatabase);
+            snapshotStore.save(foodDatabase, logManager);
+        }
+        // Re-apply log changes journaled since the log was last written
+        logManager.replayJournal(foodDatabase);
+
+        // --autosave-ms <n>: save changes once nothing has changed for n ms (0 turns it off)
+        long autosaveMillis = 2000;
+        int autosaveFlag = List.of(args).indexOf("--autosave-ms");
+        if (autosaveFlag >= 0) {
+            try {
+                autosaveMillis = Long.parseLong(args[autosaveFlag + 1]);
+            } catch (RuntimeException e) {
+                System.out.println("Invalid --autosave-ms value, using " + autosaveMillis);
+            }
+        }
+
+        // --export [dir]: writes the saved foods and log to dir/foods.txt and dir/log.txt
+        if (args.length > 0 && args[0].equals("--export")) {
+            String dir = args.length > 1 ? args[1] : "data";
+            foodDatabase.exportFoods(Paths.get(dir, "foods.txt").toString());
+            logManager.exportLogs(Paths.get(dir, "log.txt").toString());
+            snapshotStore.save(foodDatabase, logManager);
+            logManager.close();
+            System.out.println("Exported foods and logs to " + dir);
+            return;
+        }
+
+        // Batch mode: --batch <file|-> applies a command script (or stdin) without prompts
+        if (args.length > 0 && args[0].equals("--batch")) {
+            runBatch(args);
+            return;
+        }
+
+        // A burst of edits that never pauses is still saved every 30 seconds at least
+        if (autosaveMillis > 0) {
+            autosave = new AutosaveScheduler(autosaveMillis, Math.max(30000, autosaveMillis));
+            AutosaveScheduler.Store foods = autosave.register("foods", partitions -> foodDatabase.saveFoods());
+            foodDatabase.setChangeListener(foods::markDirty);
+        }
+
+        // Service mode: --serve [port] exposes the same operations over HTTP instead of the menu
+        if (args.length > 0 && args[0].equals("--serve")) {
+            runServer(args);
+            return;
+        }
+
+        if (autosave != null) {
+            // The log tracks its changed months itself and rewrites only those
+            AutosaveScheduler.Store logs = autosave.register("logs", days -> logManager.compactLogs());
+            logManager.setChangeListener(logs::markDirty);
+            autosave.installShutdownHook();
+        }
 
         System.out.println("Welcome to YADA - Yet Another Diet Assistant (CLI Version)");
 
@@ -84,8 +161,13 @@ public class Main {
                             System.out.println("Log data Saved.");
                             break;
                         case "3":
+                            // Autosave writes whatever is still pending before it stops; the
+                            // saves below then only write what is left, if anything
+                            if (autosave != null) autosave.close();
                             foodDatabase.saveFoods();
-                            logManager.saveLogs();
+                            logManager.compactLogs();
+                            snapshotStore.save(foodDatabase, logManager);
+                            logManager.close();
                             System.out.println("Data saved. Exiting application.");
                             running = false;
                             break;
@@ -96,6 +178,15 @@ public class Main {
                 case "14":
                     loadFoodFromExternalSource();
                     break;
+                case "15":
+                    viewLogRange();
+                    break;
+                case "16":
+                    viewCalorieTrends();
+                    break;
+                case "17":
+                    undoManager.redo();
+                    break;
                 default:
                     System.out.println("Invalid choice. Please try again.");
             }
@@ -118,11 +209,14 @@ public class Main {
         System.out.println("12. Change Day");
         System.out.println("13. Save or Exit");
         System.out.println("14. Load food from External Source");
+        System.out.println("15. View Log for a Date Range");
+        System.out.println("16. View Calorie Trends");
+        System.out.println("17. Redo Last Undone Action");
     }
 
     private static void addBasicFood() {
         String id = InputHelper.readLine("Enter food id: ");
-        if(foodDatabase.findFoodById(id) != null){
+        if(foodDatabase.containsFood(id)){
             System.out.println("Food already exists.");
             return;
         }
@@ -148,7 +242,7 @@ public class Main {
 
     private static void addCompositeFood() {
         String id = InputHelper.readLine("Enter composite food id: ");
-        if(foodDatabase.findFoodById(id) != null){
+        if(foodDatabase.containsFood(id)){
             System.out.println("Food already exists.");
             return;
         }
@@ -194,8 +288,14 @@ public class Main {
             System.out.println("Food not found.");
             return;
         }
-        foodDatabase.removeFood(food);
+        List<Food> removed = foodDatabase.removeFood(food);
         System.out.println("Food '" + id + "' removed.");
+        if (removed.size() > 1) {
+            System.out.println("Also removed composite foods using it: "
+                    + removed.subList(1, removed.size()).stream().map(Food::getId).toList());
+        }
+
+        undoManager.addCommand(new RemoveFoodsCommand(foodDatabase, removed));
     }
 
     private static void addLogEntry() {
@@ -205,6 +305,7 @@ public class Main {
         System.out.println("\nChoose how to add food:");
         System.out.println("1. By food ID");
         System.out.println("2. Search by keywords");
+        System.out.println("3. Type-ahead search");
         String choice = InputHelper.readLine("Enter choice: ");
 
         Food food;
@@ -223,27 +324,35 @@ public class Main {
             String matchMode = InputHelper.readLine("Match all keywords? (y/n): ");
             boolean matchAll = matchMode.equalsIgnoreCase("y");
 
-            List<Food> results = foodDatabase.searchFoods(keywords, matchAll);
-
-            if (results.isEmpty()) {
-                System.out.println("No matching foods found.");
+            food = chooseFood(keywords, matchAll);
+            if (food == null) return;
+        } else if (choice.equals("3")) {
+            String partial = InputHelper.readLine("\nStart typing a food id or keyword: ");
+            List<TypeaheadIndex.Suggestion> suggestions = foodDatabase.suggest(partial, 10);
+            if (suggestions.isEmpty()) {
+                System.out.println("No suggestions.");
                 return;
             }
 
-            System.out.println("Matching foods:");
-            for (int i = 0; i < results.size(); i++) {
-                System.out.println((i + 1) + ". " + results.get(i));
+            System.out.println("Suggestions:");
+            for (int i = 0; i < suggestions.size(); i++) {
+                System.out.println((i + 1) + ". " + suggestions.get(i));
             }
 
-            int selectedIndex = InputHelper.readInt("Enter the number of the food to log (0 for N.A.):");
-            if (selectedIndex < 0 || selectedIndex > results.size()) {
+            int selectedIndex = InputHelper.readInt("Enter the number of the suggestion (0 for N.A.):");
+            if (selectedIndex < 0 || selectedIndex > suggestions.size()) {
                 System.out.println("Invalid selection.");
                 return;
             }
-
-            if(selectedIndex == 0)
+            if (selectedIndex == 0)
                 return;
-            food = results.get(selectedIndex - 1);
+
+            // A keyword narrows the choice to the foods tagged with it
+            TypeaheadIndex.Suggestion suggestion = suggestions.get(selectedIndex - 1);
+            food = suggestion.isKeyword()
+                    ? chooseFood(List.of(suggestion.getText()), true)
+                    : suggestion.getFood();
+            if (food == null) return;
         } else {
             System.out.println("Invalid choice.");
             return;
@@ -254,15 +363,54 @@ public class Main {
             System.out.println("Invalid number of servings. Defaulting to 1.");
             servings = 1;
         }
-        LogEntry entry = new LogEntry(food, servings);
-        logManager.addLogEntry(date, entry);
+        LogEntry entry = logManager.addLogEntry(date, new LogEntry(food, servings));
         System.out.println("Log entry added: " + entry);
+        undoManager.addCommand(new AddLogEntryCommand(logManager, date, entry));
+    }
+
+    // Shows the ranked matches ten at a time and asks for one; null when there are none or
+    // the user picks none. Foods the user logs often rank higher.
+    private static Food chooseFood(List<String> keywords, boolean matchAll) {
+        String cursor = null;
+        int shown = 0;
+        while (true) {
+            SearchPage page = foodDatabase.searchRanked(keywords, matchAll, 10, cursor, logManager::getLogCount);
+            List<Food> results = page.getFoods();
+            if (results.isEmpty()) {
+                System.out.println("No matching foods found.");
+                return null;
+            }
+
+            System.out.println(shown == 0 ? "Matching foods:" : "More matching foods:");
+            for (int i = 0; i < results.size(); i++) {
+                System.out.println((i + 1) + ". " + results.get(i));
+            }
+
+            String prompt = page.hasMore()
+                    ? "Enter the number of the food to log, n for more results (0 for N.A.):"
+                    : "Enter the number of the food to log (0 for N.A.):";
+            String input = InputHelper.readLine(prompt).trim();
+            if (page.hasMore() && input.equalsIgnoreCase("n")) {
+                cursor = page.getNextCursor();
+                shown += results.size();
+                continue;
+            }
+
+            int selectedIndex;
+            try {
+                selectedIndex = Integer.parseInt(input);
+            } catch (NumberFormatException e) {
+                selectedIndex = -1;
+            }
+            if (selectedIndex < 0 || selectedIndex > results.size()) {
+                System.out.println("Invalid selection.");
+                return null;
+            }
 
-        int indexAdded = logManager.getLogEntries(date).size() - 1;
-        undoManager.addCommand(() -> {
-            logManager.deleteLogEntry(date, indexAdded);
-            System.out.println("Undid log entry addition for " + date);
-        });
+            if(selectedIndex == 0)
+                return null;
+            return results.get(selectedIndex - 1);
+        }
     }
 
     private static void deleteLogEntry() {
@@ -287,10 +435,7 @@ public class Main {
         System.out.println("Deleted entry: " + removed);
 
         // Add an undo command
-        undoManager.addCommand(() -> {
-            logManager.addLogEntry(date, removed);
-            System.out.println("Undid deletion of log entry for " + date);
-        });
+        undoManager.addCommand(new DeleteLogEntryCommand(logManager, date, removed));
     }
 
     private static void viewDailyLog() {
@@ -306,21 +451,59 @@ public class Main {
             System.out.println("----------------------------------------");
             System.out.printf("%-20s %-10s %-10s%n", "Food", "Servings", "Calories");
 
-            int totalCalories = 0;
             for (LogEntry entry : entries) {
                 String foodName = entry.getFood().getId();
                 int servings = entry.getServings();
                 int calories = entry.getTotalCalories();
-                totalCalories += calories;
                 System.out.printf("%-20s %-10d %-10d%n", foodName, servings, calories);
             }
 
             System.out.println("----------------------------------------");
-            System.out.printf("%-20s %-10s %-10d%n", "Total", "", totalCalories);
+            System.out.printf("%-20s %-10s %-10d%n", "Total", "", logManager.getDailyCalories(LocalDate.parse(date)));
             System.out.println("========================================\n");
         }
     }
 
+    private static void viewLogRange() {
+        String fromInput = InputHelper.readLine("Enter start date (YYYY-MM-DD): ");
+        if (!Validator.isValidDate(fromInput)) {
+            System.out.println("Invalid date format.");
+            return;
+        }
+        String toInput = InputHelper.readLine("Enter end date (YYYY-MM-DD) [default/invalid: today]: ");
+        LocalDate from = LocalDate.parse(fromInput);
+        LocalDate to = LocalDate.parse((toInput.isBlank() || !Validator.isValidDate(toInput)) ? currentDate : toInput);
+
+        System.out.println("\n========================================");
+        System.out.println("Log from " + from + " to " + to);
+        System.out.println("----------------------------------------");
+        System.out.printf("%-12s %-10s %-10s%n", "Date", "Entries", "Calories");
+        logManager.forEachDay(from, to, (day, entries) ->
+                System.out.printf("%-12s %-10d %-10d%n", day, entries.size(), logManager.getDailyCalories(day)));
+        System.out.println("----------------------------------------");
+        System.out.printf("%-12s %-10s %-10d%n", "Total", "", logManager.getTotalCalories(from, to));
+        System.out.println("========================================\n");
+    }
+
+    private static void viewCalorieTrends() {
+        String dateInput = InputHelper.readLine("Enter end date (YYYY-MM-DD) [default/invalid: today]: ");
+        LocalDate end = LocalDate.parse((dateInput.isBlank() || !Validator.isValidDate(dateInput)) ? currentDate : dateInput);
+
+        System.out.println("\n========================================");
+        System.out.println("Calorie trends up to " + end);
+        System.out.println("----------------------------------------");
+        System.out.printf("%-12s %-12s %-12s%n", "Period", "Total", "Daily avg");
+        for (int days : new int[]{7, 30, 365}) {
+            LocalDate start = end.minusDays(days - 1);
+            System.out.printf("%-12s %-12d %-12.1f%n", days + " days",
+                    logManager.getTotalCalories(start, end), logManager.getAverageCalories(start, end));
+        }
+        if (userProfile != null) {
+            System.out.printf("Target calorie intake: %.3f kcal/day%n", dietGoalCalculator.calculateTargetCalories(userProfile));
+        }
+        System.out.println("========================================\n");
+    }
+
     private static void setUserProfile() {
         if (userProfile != null) {
             System.out.println("User profile already set.");
@@ -409,8 +592,7 @@ public class Main {
         String dateInput = InputHelper.readLine("Enter date (YYYY-MM-DD) [default/invalid: today]: ");
         String date = (dateInput.isBlank() || !Validator.isValidDate(dateInput)) ? currentDate : dateInput;
 
-        List<LogEntry> entries = logManager.getLogEntries(date);
-        int totalCalories = entries.stream().mapToInt(LogEntry::getTotalCalories).sum();
+        long totalCalories = logManager.getDailyCalories(LocalDate.parse(date));
         double targetCalories = dietGoalCalculator.calculateTargetCalories(userProfile);
         double difference = totalCalories - targetCalories;
 
@@ -459,7 +641,19 @@ public class Main {
 
     }
 
+    // Everything one import adds is a single undo step
     private static void loadFoodFromExternalSource() {
+        undoManager.beginGroup("import");
+        foodDatabase.setAdditionListener(batch -> undoManager.addCommand(new AddFoodsCommand(foodDatabase, batch)));
+        try {
+            importFoods();
+        } finally {
+            foodDatabase.setAdditionListener(null);
+            undoManager.endGroup();
+        }
+    }
+
+    private static void importFoods() {
         String filePath = InputHelper.readLine("Enter file path: ");
         String fileType = InputHelper.readLine("Enter file type (csv, json, xml...): ");
 
@@ -473,7 +667,27 @@ public class Main {
             return;
         }
 
+        String profileName = InputHelper.readLine("Mapping profile name ('auto' to detect, blank to choose columns): ").trim();
+        if (!profileName.isEmpty()) {
+            ImportMapping mapping = null;
+            if (!profileName.equalsIgnoreCase("auto")) {
+                mapping = importProfiles.getProfile(profileName);
+                if (mapping == null) {
+                    mapping = createImportProfile(profileName);
+                    if (mapping == null) return;
+                }
+            }
+            ImportResult result = importer.importFoods(filePath, foodDatabase, mapping);
+            System.out.println(result);
+            return;
+        }
+
         try {
+            if (importer instanceof FoodCSVImporter csvImporter
+                    && InputHelper.readLine("Use bulk mode for large files? (y/n): ").equalsIgnoreCase("y")) {
+                csvImporter.importFoodsBulk(filePath, foodDatabase);
+                return;
+            }
             importer.importFoods(filePath, foodDatabase);
             System.out.println(fileType.toUpperCase() + " food data imported successfully.");
         } catch (Exception e) {
@@ -481,4 +695,115 @@ public class Main {
         }
     }
 
+    private static ImportMapping createImportProfile(String profileName) {
+        String create = InputHelper.readLine("Profile '" + profileName + "' not found. Create it? (y/n): ");
+        if (!create.equalsIgnoreCase("y")) return null;
+        String idField = InputHelper.readLine("Column/key holding the food id: ").trim();
+        String calField = InputHelper.readLine("Column/key holding the calories: ").trim();
+        String kwField = InputHelper.readLine("Column/key holding the keywords (blank if none): ").trim();
+        if (idField.isEmpty() || calField.isEmpty()) {
+            System.out.println("ID and calories columns are required.");
+            return null;
+        }
+        ImportMapping mapping = new ImportMapping(idField, calField, kwField);
+        importProfiles.putProfile(profileName, mapping);
+        importProfiles.saveProfiles();
+        System.out.println("Profile '" + profileName + "' saved: " + mapping);
+        return mapping;
+    }
+
+    private static void runServer(String[] args) {
+        int port = 8080;
+        if (args.length > 1) {
+            try {
+                port = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                System.out.println("Invalid port: " + args[1]);
+                return;
+            }
+        }
+        // Other users' logs are kept under data/users/<id>/; the default user keeps data/log/
+        boolean columnar = List.of(args).contains("--columnar");
+        SessionManager sessions = new SessionManager(foodDatabase, "data/users",
+                () -> columnar ? new ColumnarLogStore() : new ListLogStore());
+        sessions.setAutosave(autosave);
+        sessions.register(new UserSession(YadaServer.DEFAULT_USER, logManager));
+        // Unload other users after half an hour without a request
+        sessions.evictIdle(TimeUnit.MINUTES.toMillis(30));
+        YadaServer server;
+        try {
+            server = new YadaServer(port, foodDatabase, sessions);
+        } catch (IOException e) {
+            System.out.println("Could not start server: " + e.getMessage());
+            return;
+        }
+        // Persist everything when the process is stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            if (autosave != null) autosave.close();
+            foodDatabase.saveFoods();
+            sessions.closeAll();
+            snapshotStore.save(foodDatabase, logManager);
+        }));
+        server.start();
+        System.out.println("YADA server listening on port " + server.getPort());
+    }
+
+    private static void runBatch(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: --batch <file|->");
+            return;
+        }
+        BatchProcessor batch = new BatchProcessor(foodDatabase, logManager);
+        Reader source;
+        try {
+            source = args[1].equals("-")
+                    ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                    : new FileReader(args[1], StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            System.out.println("Could not open batch file: " + e.getMessage());
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(source)) {
+            batch.run(reader);
+        } catch (IOException e) {
+            System.out.println("Error reading batch commands: " + e.getMessage());
+        }
+        // Save once, whether or not some commands failed
+        foodDatabase.saveFoods();
+        logManager.compactLogs();
+        snapshotStore.save(foodDatabase, logManager);
+        logManager.close();
+        System.out.println("Applied " + batch.getApplied() + " commands (" + batch.getFailed() + " failed).");
+    }
+
+    private static void runBatchImport(String[] args) {
+        if (args.length < 3) {
+            System.out.println("Usage: --import <profile|auto> <file>...");
+            return;
+        }
+        ImportMapping mapping = null;
+        if (!args[1].equalsIgnoreCase("auto")) {
+            mapping = importProfiles.getProfile(args[1]);
+            if (mapping == null) {
+                System.out.println("Unknown import profile: " + args[1]);
+                return;
+            }
+        }
+
+        foodDatabase.loadFoods();
+        List<ImportResult> results = FoodImporter.importAll(List.of(args).subList(2, args.length), foodDatabase, mapping);
+        long imported = 0;
+        int failed = 0;
+        for (ImportResult result : results) {
+            imported += result.getImported();
+            if (!result.isSuccessful()) {
+                failed++;
+                System.out.println(result);
+            }
+        }
+        foodDatabase.saveFoods();
+        System.out.println("Imported " + imported + " foods from " + results.size() + " files (" + failed + " failed).");
+    }
+
 }
@@ -0,0 +1,7 @@
+package com.yada.models;
+
+// Notified after a food's calories per serving may have changed, either directly or because
+// a component somewhere below a composite changed
+public interface CalorieListener {
+    void caloriesChanged(Food food);
+}
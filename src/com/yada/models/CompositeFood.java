@@ -1,42 +1,72 @@
 package com.yada.models;
 
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CompositeFood extends Food {
-    // Components: basic or composite foods and their serving counts
-    private Map<Food, Integer> components;
+    // Components: basic or composite foods and their serving counts, in the order they were added.
+    // The map is replaced rather than modified, so readers can iterate it while a writer adds.
+    private volatile Map<Food, Integer> components;
+    // Memoized total of the component tree, packed as (version << 32 | calories). It is valid
+    // only while its version matches the current one, which every invalidation bumps, so a
+    // total computed concurrently with an invalidation can never be mistaken for fresh.
+    private volatile long cachedCalories = -1L << 32;
+    private final AtomicInteger version = new AtomicInteger();
 
     public CompositeFood(String id, List<String> keywords) {
         // Calories are computed from components; Initially set to 0 here.
         super(id, keywords, 0);
-        this.components = new HashMap<>();
+        this.components = new LinkedHashMap<>();
     }
 
-    public void addComponent(Food food, int servings) {
-        components.put(food, servings);
-        updateCalories();
+    public synchronized void addComponent(Food food, int servings) {
+        Map<Food, Integer> updated = new LinkedHashMap<>(components);
+        updated.put(food, servings);
+        components = updated;
+        food.addDependent(this);
+        caloriesChanged();
     }
 
-    private void updateCalories() {
-        int totalCalories = 0;
-        for (Map.Entry<Food, Integer> entry : components.entrySet()) {
-            totalCalories += entry.getKey().getCaloriesPerServing() * entry.getValue();
+    public Map<Food, Integer> getComponents() {
+        return Collections.unmodifiableMap(components);
+    }
+
+    // Unregisters this composite from its components' reverse edges (used when it is removed)
+    public void detachFromComponents() {
+        for (Food component : components.keySet()) {
+            component.removeDependent(this);
         }
-        this.setCaloriesPerServing(totalCalories);
     }
 
-    public Map<Food, Integer> getComponents() {
-        return components;
+    // Re-registers the reverse edges after a removal is undone
+    public void attachToComponents() {
+        for (Food component : components.keySet()) {
+            component.addDependent(this);
+        }
+        caloriesChanged();
+    }
+
+    // Bumps this total's version; see Food.caloriesChanged for the order of a whole walk
+    @Override
+    void invalidateCalories() {
+        version.incrementAndGet();
     }
 
     @Override
     public int getCaloriesPerServing() {
+        int current = version.get();
+        long cached = cachedCalories;
+        if ((int) (cached >>> 32) == current) {
+            return (int) cached;
+        }
         int total = 0;
         for (Map.Entry<Food, Integer> entry : components.entrySet()) {
             total += entry.getKey().getCaloriesPerServing() * entry.getValue();
         }
+        cachedCalories = ((long) current << 32) | (total & 0xFFFFFFFFL);
         return total;
     }
     @Override
@@ -1,11 +1,23 @@
 package com.yada.models;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Food {
-    private String id;
-    private List<String> keywords;
-    private int caloriesPerServing;
+    // Id and keywords are stored as SymbolTable ordinals, so repeated strings are held once
+    private final int id;
+    private final int[] keywords;
+    private volatile int caloriesPerServing;
+    // Reverse dependency edges: composites that use this food as a component (created lazily).
+    // Food does not override equals, so the concurrent set compares by identity.
+    private volatile Set<CompositeFood> dependents;
+    // Observers of calorie changes, e.g. the running totals of every user log holding this
+    // food (created lazily). A concurrent set keeps registration O(1) with many logs.
+    private volatile Set<CalorieListener> calorieListeners;
 
     /* Extensibility
     private double protein;
@@ -14,8 +26,11 @@ public class Food {
     private double fiber;*/
 
     public Food(String id, List<String> keywords, int caloriesPerServing) {
-        this.id = id;
-        this.keywords = keywords;
+        this.id = SymbolTable.FOOD_IDS.intern(id);
+        this.keywords = new int[keywords.size()];
+        for (int i = 0; i < this.keywords.length; i++) {
+            this.keywords[i] = SymbolTable.KEYWORDS.intern(keywords.get(i));
+        }
         this.caloriesPerServing = caloriesPerServing;
     }
 
@@ -30,24 +45,117 @@ public class Food {
     }*/
 
     public String getId() {
-        return id;
+        return SymbolTable.FOOD_IDS.name(id);
+    }
+
+    // Ordinal of the case-folded id; two foods with equal keys have ids that differ only in case
+    public int getIdKey() {
+        return SymbolTable.FOOD_IDS.folded(id);
     }
 
     public List<String> getKeywords() {
-        return keywords;
+        List<String> names = new ArrayList<>(keywords.length);
+        for (int keyword : keywords) {
+            names.add(SymbolTable.KEYWORDS.name(keyword));
+        }
+        return names;
+    }
+
+    // Ordinals of the folded keywords, as compared by keyword search
+    public int[] getKeywordKeys() {
+        int[] keys = new int[keywords.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = SymbolTable.KEYWORDS.folded(keywords[i]);
+        }
+        return keys;
     }
 
     public void setCaloriesPerServing(int caloriesPerServing) {
         this.caloriesPerServing = caloriesPerServing;
+        caloriesChanged();
     }
 
     public int getCaloriesPerServing() {
         return caloriesPerServing;
     }
 
+    public Set<CompositeFood> getDependents() {
+        return dependents == null ? Set.of() : Collections.unmodifiableSet(dependents);
+    }
+
+    synchronized void addDependent(CompositeFood composite) {
+        if (dependents == null) {
+            dependents = ConcurrentHashMap.newKeySet();
+        }
+        dependents.add(composite);
+    }
+
+    synchronized void removeDependent(CompositeFood composite) {
+        if (dependents != null) {
+            dependents.remove(composite);
+        }
+    }
+
+    public synchronized void addCalorieListener(CalorieListener listener) {
+        if (calorieListeners == null) {
+            calorieListeners = ConcurrentHashMap.newKeySet();
+        }
+        calorieListeners.add(listener);
+    }
+
+    public synchronized void removeCalorieListener(CalorieListener listener) {
+        if (calorieListeners != null) {
+            calorieListeners.remove(listener);
+        }
+    }
+
+    protected void notifyCalorieListeners() {
+        Set<CalorieListener> listeners = calorieListeners;
+        if (listeners == null) return;
+        for (CalorieListener listener : listeners) {
+            listener.caloriesChanged(this);
+        }
+    }
+
+    // Drops the cached total of this food and of every composite built on it, then tells
+    // their listeners. Every total is invalidated before any listener runs, and components
+    // before the composites using them, so neither a listener nor a concurrent reader can
+    // cache a total from a component that is still stale (e.g. two recipes sharing a leaf
+    // under a third).
+    protected void caloriesChanged() {
+        List<CompositeFood> ancestors = new ArrayList<>();
+        collectDependents(Collections.newSetFromMap(new IdentityHashMap<>()), ancestors);
+        // Post-order lists each composite after the ones built on it; reversed, components come first
+        Collections.reverse(ancestors);
+        invalidateCalories();
+        for (CompositeFood composite : ancestors) {
+            composite.invalidateCalories();
+        }
+        notifyCalorieListeners();
+        for (CompositeFood composite : ancestors) {
+            composite.notifyCalorieListeners();
+        }
+    }
+
+    // Drops this food's cached total; a basic food has none
+    void invalidateCalories() {
+    }
+
+    // Adds the composites built on this food, each once, in post-order over the reverse edges
+    void collectDependents(Set<CompositeFood> visited, List<CompositeFood> out) {
+        Set<CompositeFood> current = dependents;
+        if (current == null) return;
+        for (CompositeFood composite : current) {
+            if (visited.add(composite)) {
+                composite.collectDependents(visited, out);
+                out.add(composite);
+            }
+        }
+    }
+
     @Override
     public String toString() {
-        return "Food{id='" + id + "', calories=" + caloriesPerServing + ", keywords=" + keywords + "}";
+        return "Food{id='" + getId() + "', calories=" + caloriesPerServing + ", keywords=" + getKeywords() + "}";
     }
 
     /* Modified toString() method.
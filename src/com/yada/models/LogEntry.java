@@ -1,14 +1,26 @@
 package com.yada.models;
 
 public class LogEntry {
+    // Assigned by the LogManager that stores the entry and stable while it stays there, so
+    // undo can find an entry whatever was added or deleted around it; 0 until then
+    private final int id;
     private Food food;
     private int servings;
 
     public LogEntry(Food food, int servings) {
+        this(0, food, servings);
+    }
+
+    public LogEntry(int id, Food food, int servings) {
+        this.id = id;
         this.food = food;
         this.servings = servings;
     }
 
+    public int getId() {
+        return id;
+    }
+
     public Food getFood() {
         return food;
     }
@@ -0,0 +1,85 @@
+package com.yada.models;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+// Interns strings as dense int ordinals, so models and indexes hold ints and compare them
+// directly. Each symbol also knows the ordinal of its folded form (e.g. lower case), which is
+// what case-insensitive lookups compare; for already-folded strings the two are the same.
+// Ordinals are only stable for the lifetime of the process.
+//
+// The tables are process-wide and only grow: an ordinal is never released, because removed
+// foods live on in undo histories, logs and published snapshots that still hold it, and the
+// food index and journal symbols are addressed by it. They therefore hold every distinct id
+// and keyword any Food was ever built with since startup, including foods removed since,
+// imports rolled back by undo and rows rejected as duplicates after parsing. That costs
+// roughly 100 bytes per symbol plus the strings themselves. A server churning through many
+// short-lived ids should be restarted now and then; a restart interns only what is saved.
+public final class SymbolTable {
+    public static final SymbolTable FOOD_IDS = new SymbolTable(id -> id.toLowerCase(Locale.ROOT));
+    public static final SymbolTable KEYWORDS = new SymbolTable(keyword -> keyword.trim().toLowerCase(Locale.ROOT));
+
+    private final UnaryOperator<String> folding;
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private volatile String[] names = new String[256];
+    private volatile int[] folded = new int[256];
+    private int size;
+
+    private SymbolTable(UnaryOperator<String> folding) {
+        this.folding = folding;
+    }
+
+    // Ordinal for name, assigning the next one on first sight
+    public int intern(String name) {
+        Integer ordinal = ordinals.get(name);
+        if (ordinal != null) return ordinal;
+        synchronized (this) {
+            ordinal = ordinals.get(name);
+            if (ordinal != null) return ordinal;
+            String key = folding.apply(name);
+            int foldedOrdinal = key.equals(name) ? size : intern(key);
+            int assigned = size;
+            if (assigned == names.length) {
+                // Grow both arrays before publishing the new references
+                String[] grownNames = Arrays.copyOf(names, assigned * 2);
+                folded = Arrays.copyOf(folded, assigned * 2);
+                names = grownNames;
+            }
+            names[assigned] = name;
+            folded[assigned] = foldedOrdinal;
+            size = assigned + 1;
+            ordinals.put(name, assigned);
+            return assigned;
+        }
+    }
+
+    // Ordinal for name, or -1 if it was never interned
+    public int find(String name) {
+        Integer ordinal = ordinals.get(name);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    // Ordinal of the folded form of name, or -1 if no symbol folds to it
+    public int findFolded(String name) {
+        return find(folding.apply(name));
+    }
+
+    public String name(int ordinal) {
+        return names[ordinal];
+    }
+
+    public int folded(int ordinal) {
+        return folded[ordinal];
+    }
+
+    public String fold(String name) {
+        return folding.apply(name);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,172 @@
+package com.yada.server;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Closed-loop load client for YadaServer: each simulated client sends one request, waits for
+// the answer and sends the next, for a fixed duration. Reports throughput and latency
+// percentiles. Most requests are reads; --writes sets the share of log entries added.
+// With --users N, log requests are spread over users user0 .. user(N-1).
+//
+// Usage: LoadGenerator [--url http://localhost:8080] [--clients 64] [--seconds 10]
+//                      [--writes 0.1] [--users 1] [--foods apple,banana] [--keywords fruit,dairy]
+public class LoadGenerator {
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080";
+        int clients = 64;
+        int seconds = 10;
+        double writes = 0.1;
+        int users = 1;
+        String[] foods = {"apple", "banana", "rice", "bread", "milk"};
+        String[] keywords = {"fruit", "dairy", "protein", "grain", "sweet"};
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--url" -> url = args[i + 1];
+                case "--clients" -> clients = Integer.parseInt(args[i + 1]);
+                case "--seconds" -> seconds = Integer.parseInt(args[i + 1]);
+                case "--writes" -> writes = Double.parseDouble(args[i + 1]);
+                case "--users" -> users = Integer.parseInt(args[i + 1]);
+                case "--foods" -> foods = args[i + 1].split(",");
+                case "--keywords" -> keywords = args[i + 1].split(",");
+                default -> {
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(YadaServer.newRequestExecutor())
+                .build();
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService workers = YadaServer.newRequestExecutor();
+        List<Future<Stats>> results = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Worker worker = new Worker(client, url, writes, users, foods, keywords, running, c);
+            results.add(workers.submit(worker::run));
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+
+        Stats total = new Stats();
+        for (Future<Stats> result : results) {
+            total.merge(result.get());
+        }
+        workers.shutdown();
+        total.print(seconds);
+    }
+
+    private static final class Worker {
+        private final HttpClient client;
+        private final String url;
+        private final double writes;
+        private final int users;
+        private final String[] foods;
+        private final String[] keywords;
+        private final AtomicBoolean running;
+        private final Random random;
+
+        Worker(HttpClient client, String url, double writes, int users, String[] foods, String[] keywords,
+               AtomicBoolean running, long seed) {
+            this.client = client;
+            this.url = url;
+            this.writes = writes;
+            this.users = users;
+            this.foods = foods;
+            this.keywords = keywords;
+            this.running = running;
+            this.random = new Random(seed);
+        }
+
+        Stats run() {
+            Stats stats = new Stats();
+            while (running.get()) {
+                HttpRequest request = nextRequest();
+                long start = System.nanoTime();
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    stats.record(System.nanoTime() - start, response.statusCode() < 500);
+                } catch (Exception e) {
+                    stats.record(System.nanoTime() - start, false);
+                }
+            }
+            return stats;
+        }
+
+        private HttpRequest nextRequest() {
+            double roll = random.nextDouble();
+            String food = foods[random.nextInt(foods.length)];
+            if (roll < writes) {
+                String body = "{\"date\":\"" + LocalDate.now() + "\",\"foodId\":\"" + food + "\",\"servings\":1}";
+                String user = users > 1 ? "?user=user" + random.nextInt(users) : "";
+                return HttpRequest.newBuilder(URI.create(url + "/logs" + user))
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build();
+            }
+            String path;
+            if (roll < writes + (1 - writes) / 2) {
+                path = "/foods/search?q=" + encode(keywords[random.nextInt(keywords.length)])
+                        + "&match=" + (random.nextBoolean() ? "all" : "any");
+            } else {
+                path = "/foods?id=" + encode(food);
+            }
+            return HttpRequest.newBuilder(URI.create(url + path)).GET().build();
+        }
+
+        private static String encode(String value) {
+            return URLEncoder.encode(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    // Latencies of one client, in nanoseconds
+    private static final class Stats {
+        private long[] latencies = new long[1024];
+        private int count;
+        private int failures;
+
+        void record(long nanos, boolean ok) {
+            if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+            latencies[count++] = nanos;
+            if (!ok) failures++;
+        }
+
+        void merge(Stats other) {
+            if (count + other.count > latencies.length) {
+                latencies = Arrays.copyOf(latencies, count + other.count);
+            }
+            System.arraycopy(other.latencies, 0, latencies, count, other.count);
+            count += other.count;
+            failures += other.failures;
+        }
+
+        void print(int seconds) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            System.out.printf("Requests: %d (%d failed) in %d s, %.0f req/s%n",
+                    count, failures, seconds, count / (double) seconds);
+            if (count == 0) return;
+            System.out.printf("Latency ms: p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                    percentile(sorted, 0.999), sorted[count - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+            return sorted[Math.max(index, 0)] / 1e6;
+        }
+    }
+}
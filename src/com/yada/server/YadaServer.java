@@ -0,0 +1,586 @@
+package com.yada.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.yada.models.CompositeFood;
+import com.yada.models.Food;
+import com.yada.models.LogEntry;
+import com.yada.models.UserProfile;
+import com.yada.services.*;
+import com.yada.utils.Validator;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// HTTP/JSON front end for the same services the CLI menu drives. Each request runs on its own
+// virtual thread when the JVM has them (Java 21+), otherwise on a cached pool of platform threads.
+// Log, undo, profile and goal requests act on the user named by the user query parameter
+// (default "default"); foods are one catalog shared by all users.
+//
+//   GET    /foods?id=ID                       one food
+//   GET    /foods/search?q=kw1,kw2&match=all  keyword search (match=any by default)
+//          ..&limit=20&cursor=C                ranked, one page at a time; "next" is the cursor
+//                                             of the following page
+//   POST   /foods                             {"id","calories","keywords":[..]} or, for a composite,
+//                                             {"id","keywords":[..],"components":{"id":servings,..}}
+//   DELETE /foods?id=ID                       removes the food and the composites using it
+//   GET    /logs?date=YYYY-MM-DD              entries of a day with its total
+//   POST   /logs                              {"date","foodId","servings"}
+//   DELETE /logs?date=YYYY-MM-DD&id=N         id as listed by GET /logs; &index=N (0-based) also works
+//   POST   /undo                              undoes the last change
+//   POST   /redo                              redoes the last undone change
+//   POST   /logout                            saves the user's log and unloads the session,
+//                                             dropping its undo history
+//   PUT    /profile                           {"gender","height","age","weight","activityLevel","method":1|2}
+//   GET    /goals?date=YYYY-MM-DD             consumed vs. target calories
+//
+// Food reads go straight to the FoodDatabase, which is safe for concurrent readers. Each
+// user's session is used under that user's stripe lock in the SessionManager, so requests
+// for different users run in parallel.
+@SuppressWarnings("unchecked") // json-simple's JSONObject and JSONArray are raw collections
+public class YadaServer {
+    public static final String DEFAULT_USER = "default";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final FoodDatabase foodDatabase;
+    private final SessionManager sessions;
+    // Guards check-then-act changes to the shared catalog; taken after a stripe lock, never before
+    private final Object catalogLock = new Object();
+
+    public YadaServer(int port, FoodDatabase foodDatabase, SessionManager sessions) throws IOException {
+        this.foodDatabase = foodDatabase;
+        this.sessions = sessions;
+        this.server = HttpServer.create(new InetSocketAddress(port), 1024);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        route("/foods/search", this::searchFoods);
+        route("/foods", this::foods);
+        route("/logs", this::logs);
+        route("/undo", this::undo);
+        route("/redo", this::redo);
+        route("/logout", this::logout);
+        route("/profile", this::profile);
+        route("/goals", this::goals);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // Stops accepting requests, giving running ones up to delaySeconds to finish
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    // Virtual thread per request where available. Looked up reflectively so the code still
+    // compiles and runs on Java 17.
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private Response searchFoods(Request request) {
+        if (!request.method.equals("GET")) return Response.methodNotAllowed();
+        String q = request.query.getOrDefault("q", "");
+        List<String> keywords = q.isBlank() ? List.of() : List.of(q.split("\\s*,\\s*"));
+        boolean all = request.query.getOrDefault("match", "any").equalsIgnoreCase("all");
+        if (request.query.containsKey("limit") || request.query.containsKey("cursor")) {
+            return searchRanked(request, keywords, all);
+        }
+        JSONArray foods = new JSONArray();
+        for (Food food : foodDatabase.searchFoods(keywords, all)) {
+            foods.add(toJson(food));
+        }
+        JSONObject body = new JSONObject();
+        body.put("foods", foods);
+        return Response.ok(body);
+    }
+
+    // One page of ranked results; the user's own logging frequency counts towards the score
+    private Response searchRanked(Request request, List<String> keywords, boolean all) {
+        int limit;
+        try {
+            limit = Integer.parseInt(request.query.getOrDefault("limit", "20"));
+        } catch (NumberFormatException e) {
+            return Response.badRequest("Invalid limit.");
+        }
+        if (limit < 1 || limit > 1000) return Response.badRequest("Limit must be between 1 and 1000.");
+        String cursor = request.query.get("cursor");
+        SearchPage page;
+        try {
+            page = sessions.withSession(request.user(), session -> foodDatabase.searchRanked(
+                    keywords, all, limit, cursor, session.getLogManager()::getLogCount));
+        } catch (IllegalArgumentException e) {
+            return Response.badRequest(e.getMessage());
+        }
+        JSONArray foods = new JSONArray();
+        for (SearchPage.Hit hit : page.getHits()) {
+            JSONObject json = toJson(hit.getFood());
+            json.put("score", hit.getScore());
+            foods.add(json);
+        }
+        JSONObject body = new JSONObject();
+        body.put("foods", foods);
+        if (page.hasMore()) body.put("next", page.getNextCursor());
+        return Response.ok(body);
+    }
+
+    private Response foods(Request request) {
+        switch (request.method) {
+            case "GET": {
+                Food food = foodDatabase.findFoodById(request.query.get("id"));
+                return food == null ? Response.notFound("Food not found.") : Response.ok(toJson(food));
+            }
+            case "POST":
+                return addFood(request.json());
+            case "DELETE":
+                return removeFood(request.user(), request.query.get("id"));
+            default:
+                return Response.methodNotAllowed();
+        }
+    }
+
+    private Response addFood(JSONObject body) {
+        String id = string(body, "id");
+        if (!Validator.isValidId(id)) {
+            return Response.badRequest("Invalid ID. Use only letters, numbers, underscores and spaces.");
+        }
+        List<String> keywords = strings(body.get("keywords"));
+        if (!Validator.isValidKeywordList(keywords)) {
+            return Response.badRequest("Invalid keywords. Use only letters, numbers, underscores and spaces. No more than 10.");
+        }
+
+        // Components are resolved up front; the composite is only wired to them once it is accepted
+        Map<Food, Integer> parts = null;
+        Number calories = null;
+        if (body.get("components") instanceof Map<?, ?> components) {
+            parts = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> component : components.entrySet()) {
+                Food part = foodDatabase.findFoodById(String.valueOf(component.getKey()));
+                if (part == null) return Response.badRequest("Food not found: " + component.getKey());
+                Number servings = number(component.getValue());
+                if (servings == null || !Validator.isValidServings(servings.intValue())) {
+                    return Response.badRequest("Invalid servings. Must be positive.");
+                }
+                parts.put(part, servings.intValue());
+            }
+            if (parts.isEmpty()) {
+                return Response.badRequest("Composite food must have at least one component.");
+            }
+        } else {
+            calories = number(body.get("calories"));
+            if (calories == null || !Validator.isValidCalorieValue(calories.doubleValue())) {
+                return Response.badRequest("Invalid calorie value. Must be positive.");
+            }
+        }
+
+        Food food;
+        // Check and insert under the lock so two requests cannot add the same id
+        synchronized (catalogLock) {
+            if (foodDatabase.containsFood(id)) return Response.conflict("Food already exists.");
+            if (parts != null) {
+                CompositeFood composite = new CompositeFood(id, keywords);
+                parts.forEach(composite::addComponent);
+                food = composite;
+            } else {
+                food = new Food(id, keywords, calories.intValue());
+            }
+            foodDatabase.addFoods(List.of(food));
+        }
+        return Response.created(toJson(food));
+    }
+
+    // The removal goes on the undo history of the user who made it
+    private Response removeFood(String user, String id) {
+        return sessions.withSession(user, session -> {
+            List<Food> removed;
+            synchronized (catalogLock) {
+                Food food = foodDatabase.findFoodById(id);
+                if (food == null) return Response.notFound("Food not found.");
+                removed = foodDatabase.removeFood(food);
+            }
+            session.getUndoManager().addCommand(new RemoveFoodsCommand(foodDatabase, removed));
+
+            JSONArray ids = new JSONArray();
+            for (Food f : removed) ids.add(f.getId());
+            JSONObject body = new JSONObject();
+            body.put("removed", ids);
+            return Response.ok(body);
+        });
+    }
+
+    private Response logs(Request request) {
+        switch (request.method) {
+            case "GET":
+                return viewLog(request.user(), request.query.get("date"));
+            case "POST":
+                return addLogEntry(request.user(), request.json());
+            case "DELETE":
+                return deleteLogEntry(request.user(), request.query.get("date"), request.query.get("id"),
+                        request.query.get("index"));
+            default:
+                return Response.methodNotAllowed();
+        }
+    }
+
+    private Response viewLog(String user, String date) {
+        if (!Validator.isValidDate(date)) return Response.badRequest("Invalid date; use YYYY-MM-DD between 1900 and 2200.");
+        JSONArray entries = new JSONArray();
+        long total = sessions.withSession(user, session -> {
+            LogManager logManager = session.getLogManager();
+            List<LogEntry> logEntries = logManager.getLogEntries(date);
+            for (int i = 0; i < logEntries.size(); i++) {
+                LogEntry entry = logEntries.get(i);
+                JSONObject json = new JSONObject();
+                json.put("index", i);
+                json.put("id", entry.getId());
+                json.put("foodId", entry.getFood().getId());
+                json.put("servings", entry.getServings());
+                json.put("calories", entry.getTotalCalories());
+                entries.add(json);
+            }
+            return logManager.getDailyCalories(LocalDate.parse(date));
+        });
+        JSONObject body = new JSONObject();
+        body.put("date", date);
+        body.put("entries", entries);
+        body.put("totalCalories", total);
+        return Response.ok(body);
+    }
+
+    private Response addLogEntry(String user, JSONObject body) {
+        String date = string(body, "date");
+        if (!Validator.isValidDate(date)) return Response.badRequest("Invalid date; use YYYY-MM-DD between 1900 and 2200.");
+        Food food = foodDatabase.findFoodById(string(body, "foodId"));
+        if (food == null) return Response.notFound("Food not found.");
+        Number servings = number(body.get("servings"));
+        if (servings == null || !Validator.isValidServings(servings.intValue())) {
+            return Response.badRequest("Invalid number of servings.");
+        }
+
+        LogEntry entry = sessions.withSession(user, session -> {
+            LogManager logManager = session.getLogManager();
+            LogEntry added = logManager.addLogEntry(date, new LogEntry(food, servings.intValue()));
+            session.getUndoManager().addCommand(new AddLogEntryCommand(logManager, date, added));
+            return added;
+        });
+        JSONObject json = new JSONObject();
+        json.put("id", entry.getId());
+        json.put("date", date);
+        json.put("foodId", food.getId());
+        json.put("servings", entry.getServings());
+        json.put("calories", entry.getTotalCalories());
+        return Response.created(json);
+    }
+
+    // By entry id when given, which stays right whatever else was added or deleted; else by index
+    private Response deleteLogEntry(String user, String date, String idParam, String indexParam) {
+        if (!Validator.isValidDate(date)) return Response.badRequest("Invalid date; use YYYY-MM-DD between 1900 and 2200.");
+        int id;
+        int index;
+        try {
+            id = idParam == null ? 0 : Integer.parseInt(idParam);
+            index = idParam == null ? Integer.parseInt(indexParam) : -1;
+        } catch (NumberFormatException e) {
+            return Response.badRequest(idParam == null ? "Invalid entry index." : "Invalid entry id.");
+        }
+        return sessions.withSession(user, session -> {
+            LogManager logManager = session.getLogManager();
+            LogEntry removed;
+            if (idParam != null) {
+                removed = logManager.deleteLogEntryById(date, id);
+            } else {
+                List<LogEntry> entries = logManager.getLogEntries(date);
+                removed = index < 0 || index >= entries.size() ? null : entries.get(index);
+                if (removed != null) logManager.deleteLogEntry(date, index);
+            }
+            if (removed == null) return Response.notFound("No such log entry.");
+            session.getUndoManager().addCommand(new DeleteLogEntryCommand(logManager, date, removed));
+            JSONObject body = new JSONObject();
+            body.put("deleted", removed.getId());
+            return Response.ok(body);
+        });
+    }
+
+    private Response undo(Request request) {
+        if (!request.method.equals("POST")) return Response.methodNotAllowed();
+        Command undone;
+        try {
+            // Undo may put foods back into the catalog, so it is checked and applied like an addition
+            undone = sessions.withSession(request.user(), session -> {
+                synchronized (catalogLock) {
+                    return session.getUndoManager().undoLast();
+                }
+            });
+        } catch (IllegalStateException e) {
+            return Response.conflict(e.getMessage());
+        }
+        JSONObject body = new JSONObject();
+        body.put("undone", undone != null);
+        if (undone != null) body.put("change", undone.describe());
+        return Response.ok(body);
+    }
+
+    private Response redo(Request request) {
+        if (!request.method.equals("POST")) return Response.methodNotAllowed();
+        Command redone;
+        try {
+            redone = sessions.withSession(request.user(), session -> {
+                synchronized (catalogLock) {
+                    return session.getUndoManager().redoLast();
+                }
+            });
+        } catch (IllegalStateException e) {
+            return Response.conflict(e.getMessage());
+        }
+        JSONObject body = new JSONObject();
+        body.put("redone", redone != null);
+        if (redone != null) body.put("change", redone.describe());
+        return Response.ok(body);
+    }
+
+    private Response logout(Request request) {
+        if (!request.method.equals("POST")) return Response.methodNotAllowed();
+        String user = request.user();
+        if (user.equals(DEFAULT_USER)) return Response.conflict("The default user cannot log out.");
+        JSONObject body = new JSONObject();
+        body.put("closed", sessions.close(user));
+        return Response.ok(body);
+    }
+
+    private Response profile(Request request) {
+        if (!request.method.equals("PUT")) return Response.methodNotAllowed();
+        JSONObject body = request.json();
+        String gender = string(body, "gender");
+        if (!"male".equalsIgnoreCase(gender) && !"female".equalsIgnoreCase(gender)) {
+            return Response.badRequest("YADA only supports binaries.");
+        }
+        Number height = number(body.get("height"));
+        Number age = number(body.get("age"));
+        Number weight = number(body.get("weight"));
+        Number activityLevel = number(body.get("activityLevel"));
+        if (height == null || age == null || weight == null || activityLevel == null) {
+            return Response.badRequest("height, age, weight and activityLevel are required.");
+        }
+        if (!Validator.isValidActivityLevel(activityLevel.doubleValue())) {
+            return Response.badRequest("Activity level must lie between 1.2 and 2.5.");
+        }
+        Number method = number(body.get("method"));
+        UserProfile userProfile = new UserProfile(gender.toLowerCase(Locale.ROOT), height.doubleValue(), age.intValue(),
+                weight.doubleValue(), activityLevel.doubleValue());
+        sessions.withSession(request.user(), session -> {
+            session.setUserProfile(userProfile);
+            if (method != null) {
+                session.setDietGoalCalculator(method.intValue() == 2 ? new MethodTwoCalculator() : new MethodOneCalculator());
+            }
+            sessions.saveProfile(session);
+            return null;
+        });
+        JSONObject json = new JSONObject();
+        json.put("profile", userProfile.toString());
+        return Response.ok(json);
+    }
+
+    private Response goals(Request request) {
+        if (!request.method.equals("GET")) return Response.methodNotAllowed();
+        String date = request.query.get("date");
+        if (!Validator.isValidDate(date)) return Response.badRequest("Invalid date; use YYYY-MM-DD between 1900 and 2200.");
+        return sessions.withSession(request.user(), session -> {
+            UserProfile userProfile = session.getUserProfile();
+            if (userProfile == null) return Response.conflict("User profile not set.");
+            long consumed = session.getLogManager().getDailyCalories(LocalDate.parse(date));
+            double target = session.getDietGoalCalculator().calculateTargetCalories(userProfile);
+            JSONObject body = new JSONObject();
+            body.put("date", date);
+            body.put("consumed", consumed);
+            body.put("target", target);
+            body.put("difference", consumed - target);
+            return Response.ok(body);
+        });
+    }
+
+    private static JSONObject toJson(Food food) {
+        JSONObject json = new JSONObject();
+        json.put("id", food.getId());
+        json.put("calories", food.getCaloriesPerServing());
+        JSONArray keywords = new JSONArray();
+        keywords.addAll(food.getKeywords());
+        json.put("keywords", keywords);
+        if (food instanceof CompositeFood composite) {
+            JSONObject components = new JSONObject();
+            for (Map.Entry<Food, Integer> component : composite.getComponents().entrySet()) {
+                components.put(component.getKey().getId(), component.getValue());
+            }
+            json.put("components", components);
+        }
+        return json;
+    }
+
+    private static String string(JSONObject body, String key) {
+        Object value = body.get(key);
+        return value == null ? null : value.toString().trim();
+    }
+
+    private static Number number(Object value) {
+        if (value instanceof Number n) return n;
+        if (value == null) return null;
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static List<String> strings(Object value) {
+        List<String> list = new ArrayList<>();
+        if (value instanceof List<?> items) {
+            for (Object item : items) list.add(String.valueOf(item).trim());
+        } else if (value != null) {
+            list.addAll(List.of(value.toString().split("\\s*,\\s*")));
+        }
+        return list;
+    }
+
+    private void route(String path, Handler handler) {
+        server.createContext(path, exchange -> {
+            Response response;
+            try {
+                // Contexts match by prefix; only the exact path is served here
+                if (!exchange.getRequestURI().getPath().equals(path)) {
+                    response = Response.notFound("No such resource.");
+                } else {
+                    response = handler.handle(new Request(exchange));
+                }
+            } catch (BadRequestException e) {
+                response = Response.badRequest(e.getMessage());
+            } catch (RuntimeException e) {
+                response = Response.error(500, "Internal error: " + e.getMessage());
+            }
+            send(exchange, response);
+        });
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] bytes = response.body.toJSONString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private interface Handler {
+        Response handle(Request request);
+    }
+
+    private static final class Request {
+        final String method;
+        final Map<String, String> query = new HashMap<>();
+        private final HttpExchange exchange;
+
+        Request(HttpExchange exchange) {
+            this.exchange = exchange;
+            this.method = exchange.getRequestMethod().toUpperCase(Locale.ROOT);
+            String raw = exchange.getRequestURI().getRawQuery();
+            if (raw == null) return;
+            for (String pair : raw.split("&")) {
+                if (pair.isEmpty()) continue;
+                int eq = pair.indexOf('=');
+                String key = eq < 0 ? pair : pair.substring(0, eq);
+                String value = eq < 0 ? "" : pair.substring(eq + 1);
+                query.put(URLDecoder.decode(key, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+            }
+        }
+
+        // User the request acts for, from the user query parameter
+        String user() {
+            String user = query.getOrDefault("user", DEFAULT_USER);
+            if (!Validator.isValidUserId(user)) throw new BadRequestException("Invalid user id.");
+            return user;
+        }
+
+        JSONObject json() {
+            try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                Object parsed = new JSONParser().parse(reader);
+                if (parsed instanceof JSONObject object) return object;
+            } catch (ParseException e) {
+                throw new BadRequestException("Malformed JSON: " + e);
+            } catch (IOException e) {
+                throw new BadRequestException("Could not read request body: " + e.getMessage());
+            }
+            throw new BadRequestException("Request body must be a JSON object.");
+        }
+    }
+
+    private static final class BadRequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        BadRequestException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Response {
+        final int status;
+        final JSONObject body;
+
+        private Response(int status, JSONObject body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response ok(JSONObject body) {
+            return new Response(200, body);
+        }
+
+        static Response created(JSONObject body) {
+            return new Response(201, body);
+        }
+
+        static Response badRequest(String message) {
+            return error(400, message);
+        }
+
+        static Response notFound(String message) {
+            return error(404, message);
+        }
+
+        static Response conflict(String message) {
+            return error(409, message);
+        }
+
+        static Response methodNotAllowed() {
+            return error(405, "Method not allowed.");
+        }
+
+        static Response error(int status, String message) {
+            JSONObject body = new JSONObject();
+            body.put("error", message);
+            return new Response(status, body);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.yada.services;
+
+import com.yada.models.Food;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Undoes an addition of foods, such as one batch of an import, in one snapshot. Consecutive
+// additions in a group merge, so a whole import undoes with a single removal.
+public class AddFoodsCommand implements Command {
+    private final FoodDatabase foodDatabase;
+    private final List<Food> added;
+    // What undo took out, including composites since built on the added foods
+    private List<Food> removed = List.of();
+
+    public AddFoodsCommand(FoodDatabase foodDatabase, List<Food> added) {
+        this.foodDatabase = foodDatabase;
+        this.added = new ArrayList<>(added);
+    }
+
+    @Override
+    public void undo() {
+        removed = foodDatabase.removeFoods(added);
+    }
+
+    @Override
+    public void redo() {
+        foodDatabase.restoreFoods(removed);
+        removed = List.of();
+    }
+
+    @Override
+    public String describe() {
+        return added.size() == 1 ? "addition of food '" + added.get(0).getId() + "'"
+                : "addition of " + added.size() + " foods";
+    }
+
+    // Food objects stay reachable through the command once undone, so they are counted too
+    @Override
+    public long footprint() {
+        return 64 + 128L * added.size();
+    }
+
+    @Override
+    public boolean mergeWith(Command next) {
+        if (!(next instanceof AddFoodsCommand other) || other.foodDatabase != foodDatabase) return false;
+        added.addAll(other.added);
+        return true;
+    }
+}
@@ -0,0 +1,32 @@
+package com.yada.services;
+
+import com.yada.models.LogEntry;
+
+// Undoes a log entry addition by deleting the entry with its id
+public class AddLogEntryCommand implements Command {
+    private final LogManager logManager;
+    private final String date;
+    private final LogEntry entry;
+
+    // entry as returned by LogManager.addLogEntry, so it carries its id
+    public AddLogEntryCommand(LogManager logManager, String date, LogEntry entry) {
+        this.logManager = logManager;
+        this.date = date;
+        this.entry = entry;
+    }
+
+    @Override
+    public void undo() {
+        logManager.deleteLogEntryById(date, entry.getId());
+    }
+
+    @Override
+    public void redo() {
+        logManager.addLogEntry(date, entry);
+    }
+
+    @Override
+    public String describe() {
+        return "log entry addition for " + date;
+    }
+}
@@ -0,0 +1,169 @@
+package com.yada.services;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Saves changed data in the background. Each registered store has a dirty flag and the set of
+// partitions (epoch days, for logs) changed since its last flush. A change only records the
+// time; the store is flushed once it has been quiet for quietMillis, so a burst of changes is
+// written once, after the burst. A store that never goes quiet is still flushed maxDelayMillis
+// after its first unsaved change. Flushes run one at a time on the scheduler's own thread, so
+// callers never wait for a file to be written.
+public class AutosaveScheduler {
+    private final ScheduledThreadPoolExecutor worker = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread thread = new Thread(r, "yada-autosave");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final long quietNanos;
+    private final long maxDelayNanos;
+    private final Map<String, Store> stores = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public AutosaveScheduler(long quietMillis, long maxDelayMillis) {
+        this.quietNanos = TimeUnit.MILLISECONDS.toNanos(quietMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(quietMillis, maxDelayMillis));
+        // Once closed, checks still waiting must not write to stores that may be closed too
+        worker.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+    }
+
+    // Writes a store; partitions are the ones marked dirty since the last flush, empty when
+    // only markDirty() was used
+    public interface Flusher {
+        void flush(Set<Integer> partitions);
+    }
+
+    // Registers a store under a unique name, replacing any store of that name
+    public Store register(String name, Flusher flusher) {
+        Store store = new Store(name, flusher);
+        stores.put(name, store);
+        return store;
+    }
+
+    // Stops saving the named store and waits for a flush of it already running, so the caller
+    // can then save and close what the store writes to itself. Unsaved changes are not flushed.
+    public void unregister(String name) {
+        Store store = stores.remove(name);
+        if (store == null) return;
+        store.cancel();
+        try {
+            // Flushes run one at a time on the worker, so this returns after the current one
+            worker.submit(() -> { }).get();
+        } catch (RejectedExecutionException | ExecutionException e) {
+            // Closed; no flush is running
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Flushes every dirty store and waits for it, e.g. before the data files are read again
+    public void flushNow() {
+        try {
+            worker.submit(this::flushAll).get();
+        } catch (Exception e) {
+            System.out.println("Error saving data: " + e.getMessage());
+        }
+    }
+
+    // Flushes what is still dirty and stops; later changes are no longer saved
+    public void close() {
+        if (closed) return;
+        closed = true;
+        flushNow();
+        worker.shutdown();
+    }
+
+    // Flushes and stops when the JVM exits, including on Ctrl-C
+    public void installShutdownHook() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "yada-autosave-shutdown"));
+    }
+
+    private void flushAll() {
+        for (Store store : stores.values()) {
+            store.flushIfDirty();
+        }
+    }
+
+    public final class Store {
+        private final String name;
+        private final Flusher flusher;
+        private Set<Integer> partitions = new HashSet<>();
+        private boolean dirty;
+        private boolean scheduled;
+        private boolean cancelled;
+        private long firstChange;
+        private long lastChange;
+
+        private Store(String name, Flusher flusher) {
+            this.name = name;
+            this.flusher = flusher;
+        }
+
+        public void markDirty() {
+            touch(null);
+        }
+
+        public void markDirty(int partition) {
+            touch(partition);
+        }
+
+        private synchronized void touch(Integer partition) {
+            long now = System.nanoTime();
+            if (!dirty) {
+                dirty = true;
+                firstChange = now;
+            }
+            lastChange = now;
+            if (partition != null) partitions.add(partition);
+            if (!scheduled && !closed && !cancelled) {
+                try {
+                    worker.schedule(this::check, quietNanos, TimeUnit.NANOSECONDS);
+                    scheduled = true;
+                } catch (RejectedExecutionException e) {
+                    // Closed meanwhile; the final flush has taken what it could
+                }
+            }
+        }
+
+        // Flushes when quiet or overdue, otherwise checks again when that will be the case
+        private void check() {
+            synchronized (this) {
+                long now = System.nanoTime();
+                long untilQuiet = lastChange + quietNanos - now;
+                long untilDue = firstChange + maxDelayNanos - now;
+                if (dirty && untilQuiet > 0 && untilDue > 0 && !closed && !cancelled) {
+                    worker.schedule(this::check, Math.min(untilQuiet, untilDue), TimeUnit.NANOSECONDS);
+                    return;
+                }
+                scheduled = false;
+            }
+            flushIfDirty();
+        }
+
+        private synchronized void cancel() {
+            cancelled = true;
+        }
+
+        // Runs on the worker thread only, so flushes of one store never overlap
+        private void flushIfDirty() {
+            Set<Integer> flushed;
+            synchronized (this) {
+                if (!dirty || cancelled) return;
+                flushed = partitions;
+                partitions = new HashSet<>();
+                dirty = false;
+            }
+            try {
+                flusher.flush(flushed);
+            } catch (RuntimeException e) {
+                System.out.println("Autosave of " + name + " failed: " + e.getMessage());
+            }
+        }
+    }
+}
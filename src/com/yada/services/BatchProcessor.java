@@ -0,0 +1,232 @@
+package com.yada.services;
+
+import com.yada.models.CompositeFood;
+import com.yada.models.Food;
+import com.yada.models.LogEntry;
+import com.yada.utils.Validator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.*;
+
+// Applies a script of commands without prompts, one command per line:
+//
+//   log <date> <foodId> [servings]
+//   delete <date> <entryNumber>                 entry numbers start at 1, as in the menu
+//   addfood <id> <calories> <kw1,kw2,..>
+//   addcomposite <id> <kw1,kw2,..> <foodId> <servings> [<foodId> <servings> ..]
+//   removefood <id>
+//
+// Arguments are separated by spaces; quote them ("veg sandwich" or 'veg sandwich') to include
+// spaces. Blank lines and lines starting with # are ignored. A failing command is reported
+// with its line number and the rest of the script still runs.
+//
+// New foods are collected and added to the database in batches of COMMIT_BATCH, so a large
+// backfill publishes a few snapshots instead of one per food. Nothing is saved here; the caller
+// saves once at the end.
+public class BatchProcessor {
+    private static final int COMMIT_BATCH = 4096;
+
+    private final FoodDatabase foodDatabase;
+    private final LogManager logManager;
+    // Foods added by the script but not yet committed, by normalized id
+    private final Map<String, Food> pending = new LinkedHashMap<>();
+    private long applied;
+    private long failed;
+
+    public BatchProcessor(FoodDatabase foodDatabase, LogManager logManager) {
+        this.foodDatabase = foodDatabase;
+        this.logManager = logManager;
+    }
+
+    public long getApplied() {
+        return applied;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    // Runs every command read from reader, printing one line per failed command
+    public void run(BufferedReader reader) throws IOException {
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) continue;
+            try {
+                execute(tokenize(trimmed));
+                applied++;
+            } catch (IllegalArgumentException e) {
+                failed++;
+                System.out.println("Line " + lineNumber + ": " + e.getMessage());
+            }
+        }
+        commitPending();
+    }
+
+    private void execute(List<String> args) {
+        String command = args.get(0).toLowerCase(Locale.ROOT);
+        switch (command) {
+            case "log" -> log(args);
+            case "delete" -> delete(args);
+            case "addfood" -> addFood(args);
+            case "addcomposite" -> addComposite(args);
+            case "removefood" -> removeFood(args);
+            default -> throw new IllegalArgumentException("Unknown command: " + args.get(0));
+        }
+    }
+
+    private void log(List<String> args) {
+        expect(args, 3, 4, "log <date> <foodId> [servings]");
+        String date = date(args.get(1));
+        Food food = food(args.get(2));
+        int servings = args.size() == 4 ? servings(args.get(3)) : 1;
+        logManager.addLogEntry(date, new LogEntry(food, servings));
+    }
+
+    private void delete(List<String> args) {
+        expect(args, 3, 3, "delete <date> <entryNumber>");
+        String date = date(args.get(1));
+        int number = integer(args.get(2), "Invalid entry number: " + args.get(2));
+        if (number < 1 || number > logManager.getLogEntries(date).size()) {
+            throw new IllegalArgumentException("No entry " + number + " on " + date + ".");
+        }
+        logManager.deleteLogEntry(date, number - 1);
+    }
+
+    private void addFood(List<String> args) {
+        expect(args, 4, 4, "addfood <id> <calories> <keywords>");
+        String id = newId(args.get(1));
+        int calories = integer(args.get(2), "Invalid calories: " + args.get(2));
+        if (!Validator.isValidCalorieValue(calories)) {
+            throw new IllegalArgumentException("Invalid Calories. Must be positive.");
+        }
+        addPending(new Food(id, keywords(args.get(3)), calories));
+    }
+
+    private void addComposite(List<String> args) {
+        if (args.size() < 5 || args.size() % 2 == 0) {
+            throw new IllegalArgumentException("Usage: addcomposite <id> <keywords> <foodId> <servings> [<foodId> <servings> ..]");
+        }
+        String id = newId(args.get(1));
+        List<String> keywords = keywords(args.get(2));
+        // Validate every component before wiring any, so a bad one leaves no dependent edges
+        Map<Food, Integer> components = new LinkedHashMap<>();
+        for (int i = 3; i < args.size(); i += 2) {
+            components.merge(food(args.get(i)), servings(args.get(i + 1)), Integer::sum);
+        }
+        CompositeFood composite = new CompositeFood(id, keywords);
+        components.forEach(composite::addComponent);
+        addPending(composite);
+    }
+
+    private void removeFood(List<String> args) {
+        expect(args, 2, 2, "removefood <id>");
+        // The food may still be pending; commit first so the database sees it
+        commitPending();
+        Food food = foodDatabase.findFoodById(args.get(1));
+        if (food == null) throw new IllegalArgumentException("Food not found: " + args.get(1));
+        foodDatabase.removeFood(food);
+    }
+
+    private void addPending(Food food) {
+        pending.put(FoodDatabase.normalizeId(food.getId()), food);
+        if (pending.size() >= COMMIT_BATCH) commitPending();
+    }
+
+    private void commitPending() {
+        if (pending.isEmpty()) return;
+        foodDatabase.addFoods(new ArrayList<>(pending.values()));
+        pending.clear();
+    }
+
+    private Food food(String id) {
+        Food food = foodDatabase.findFoodById(id);
+        if (food == null) food = pending.get(FoodDatabase.normalizeId(id));
+        if (food == null) throw new IllegalArgumentException("Food not found: " + id);
+        return food;
+    }
+
+    private String newId(String id) {
+        if (!Validator.isValidId(id)) {
+            throw new IllegalArgumentException("Invalid ID. Use only letters, numbers, underscores and spaces.");
+        }
+        if (foodDatabase.containsFood(id) || pending.containsKey(FoodDatabase.normalizeId(id))) {
+            throw new IllegalArgumentException("Food already exists: " + id);
+        }
+        return id;
+    }
+
+    private static List<String> keywords(String list) {
+        List<String> keywords = List.of(list.trim().split("\\s*,\\s*"));
+        if (!Validator.isValidKeywordList(keywords)) {
+            throw new IllegalArgumentException("Invalid keywords. Use only letters, numbers, underscores and spaces. No more than 10.");
+        }
+        return keywords;
+    }
+
+    private static String date(String date) {
+        if (!Validator.isValidDate(date)) throw new IllegalArgumentException("Invalid date: " + date);
+        return date;
+    }
+
+    private static int servings(String value) {
+        int servings = integer(value, "Invalid servings: " + value);
+        if (!Validator.isValidServings(servings)) {
+            throw new IllegalArgumentException("Invalid servings. Must be positive.");
+        }
+        return servings;
+    }
+
+    private static int integer(String value, String message) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(message);
+        }
+    }
+
+    private static void expect(List<String> args, int min, int max, String usage) {
+        if (args.size() < min || args.size() > max) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+    }
+
+    // Splits on whitespace outside quotes. Inside double quotes a backslash escapes the next
+    // character; single quotes take everything literally.
+    static List<String> tokenize(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        boolean inToken = false;
+        char quote = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else if (c == '\\' && quote == '"' && i + 1 < line.length()) {
+                    token.append(line.charAt(++i));
+                } else {
+                    token.append(c);
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+                inToken = true;
+            } else if (Character.isWhitespace(c)) {
+                if (inToken) {
+                    tokens.add(token.toString());
+                    token.setLength(0);
+                    inToken = false;
+                }
+            } else {
+                token.append(c);
+                inToken = true;
+            }
+        }
+        if (quote != 0) throw new IllegalArgumentException("Unterminated quote.");
+        if (inToken) tokens.add(token.toString());
+        return tokens;
+    }
+}
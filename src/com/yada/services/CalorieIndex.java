@@ -0,0 +1,85 @@
+package com.yada.services;
+
+import java.util.Arrays;
+
+// Per-day calorie totals over epoch days, backed by a Fenwick (binary indexed) tree so any
+// range sum is answered in O(log n) and each update costs O(log n). The covered span of days
+// grows on demand, doubling so that rebuilding the tree stays amortized O(1) per update.
+public class CalorieIndex {
+    // Kept small since every user log has its own index; doubling covers longer histories
+    private static final int INITIAL_SPAN = 64;
+
+    private int baseDay;      // epoch day held in slot 0
+    private long[] daily;     // plain per-day totals, for O(1) single-day reads and rebuilds
+    private long[] tree;      // 1-based Fenwick tree over daily
+
+    public void add(int day, long calories) {
+        if (calories == 0) return;
+        ensureCovers(day);
+        int slot = day - baseDay;
+        daily[slot] += calories;
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += calories;
+        }
+    }
+
+    public long dayTotal(int day) {
+        if (daily == null || day < baseDay || day >= baseDay + daily.length) return 0;
+        return daily[day - baseDay];
+    }
+
+    // Sum of the totals from fromDay to toDay, both inclusive
+    public long rangeTotal(int fromDay, int toDay) {
+        if (daily == null || fromDay > toDay) return 0;
+        int from = Math.max(fromDay - baseDay, 0);
+        int to = Math.min(toDay - baseDay, daily.length - 1);
+        if (from > to) return 0;
+        return prefix(to + 1) - prefix(from);
+    }
+
+    // Sum of the first count slots
+    private long prefix(int count) {
+        long sum = 0;
+        for (int i = count; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private void ensureCovers(int day) {
+        if (daily == null) {
+            baseDay = day - INITIAL_SPAN / 2;
+            daily = new long[INITIAL_SPAN];
+            tree = new long[INITIAL_SPAN + 1];
+            return;
+        }
+        int end = baseDay + daily.length;
+        if (day >= baseDay && day < end) return;
+
+        int span = daily.length;
+        int newBase = day < baseDay ? Math.min(baseDay - span, day) : baseDay;
+        int newEnd = day >= end ? Math.max(end + span, day + 1) : end;
+        long[] grown = new long[newEnd - newBase];
+        System.arraycopy(daily, 0, grown, baseDay - newBase, daily.length);
+        baseDay = newBase;
+        daily = grown;
+        rebuild();
+    }
+
+    // Linear-time Fenwick construction from daily
+    private void rebuild() {
+        tree = new long[daily.length + 1];
+        System.arraycopy(daily, 0, tree, 1, daily.length);
+        for (int i = 1; i < tree.length; i++) {
+            int parent = i + (i & -i);
+            if (parent < tree.length) tree[parent] += tree[i];
+        }
+    }
+
+    public void clear() {
+        if (daily != null) {
+            Arrays.fill(daily, 0);
+            Arrays.fill(tree, 0);
+        }
+    }
+}
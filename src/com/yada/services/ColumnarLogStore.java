@@ -0,0 +1,289 @@
+package com.yada.services;
+
+import com.yada.models.Food;
+import com.yada.models.LogEntry;
+
+import java.util.*;
+
+// Column-oriented store: entries live as four parallel int arrays (epoch day, food ordinal,
+// servings, entry id) sorted by day, split into fixed-size chunks so an insert only shifts one
+// chunk. That is 16 bytes per entry instead of a LogEntry object plus a list slot, and aggregations
+// run over plain arrays. LogEntry objects are only created on demand by the read views.
+public class ColumnarLogStore implements LogStore {
+    private static final int CHUNK_SIZE = 4096;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    // Food ordinals, assigned on first use and never reused
+    private final List<Food> foods = new ArrayList<>();
+    private final Map<Food, Integer> ordinals = new IdentityHashMap<>();
+    private int size;
+
+    private static final class Chunk {
+        final int[] days = new int[CHUNK_SIZE];
+        final int[] foods = new int[CHUNK_SIZE];
+        final int[] servings = new int[CHUNK_SIZE];
+        final int[] ids = new int[CHUNK_SIZE];
+        int size;
+    }
+
+    @Override
+    public void add(int day, LogEntry entry) {
+        int ordinal = ordinalOf(entry.getFood());
+        if (chunks.isEmpty()) chunks.add(new Chunk());
+
+        // New entries go after the existing ones for the same day
+        int c = Math.max(lastChunkStartingAtOrBefore(day), 0);
+        Chunk chunk = chunks.get(c);
+        int pos = upperBound(chunk, day);
+        if (chunk.size == CHUNK_SIZE) {
+            if (pos == CHUNK_SIZE && c == chunks.size() - 1) {
+                // Appending at the very end: leave the full chunk alone
+                chunk = new Chunk();
+                chunks.add(chunk);
+                pos = 0;
+            } else {
+                Chunk upper = split(c);
+                if (pos > chunk.size) {
+                    pos -= chunk.size;
+                    chunk = upper;
+                }
+            }
+        }
+        int tail = chunk.size - pos;
+        System.arraycopy(chunk.days, pos, chunk.days, pos + 1, tail);
+        System.arraycopy(chunk.foods, pos, chunk.foods, pos + 1, tail);
+        System.arraycopy(chunk.servings, pos, chunk.servings, pos + 1, tail);
+        System.arraycopy(chunk.ids, pos, chunk.ids, pos + 1, tail);
+        chunk.days[pos] = day;
+        chunk.foods[pos] = ordinal;
+        chunk.servings[pos] = entry.getServings();
+        chunk.ids[pos] = entry.getId();
+        chunk.size++;
+        size++;
+    }
+
+    @Override
+    public LogEntry remove(int day, int index) {
+        if (index < 0) return null;
+        int c = firstChunkEndingAtOrAfter(day);
+        if (c == chunks.size()) return null;
+        int pos = lowerBound(chunks.get(c), day) + index;
+        while (c < chunks.size() && pos >= chunks.get(c).size) {
+            pos -= chunks.get(c).size;
+            c++;
+        }
+        if (c == chunks.size()) return null;
+        Chunk chunk = chunks.get(c);
+        if (chunk.days[pos] != day) return null;
+
+        LogEntry removed = new LogEntry(chunk.ids[pos], foods.get(chunk.foods[pos]), chunk.servings[pos]);
+        int tail = chunk.size - pos - 1;
+        System.arraycopy(chunk.days, pos + 1, chunk.days, pos, tail);
+        System.arraycopy(chunk.foods, pos + 1, chunk.foods, pos, tail);
+        System.arraycopy(chunk.servings, pos + 1, chunk.servings, pos, tail);
+        System.arraycopy(chunk.ids, pos + 1, chunk.ids, pos, tail);
+        if (--chunk.size == 0) chunks.remove(c);
+        size--;
+        return removed;
+    }
+
+    @Override
+    public int indexOf(int day, int id) {
+        int c = firstChunkEndingAtOrAfter(day);
+        if (c == chunks.size()) return -1;
+        int pos = lowerBound(chunks.get(c), day);
+        int index = 0;
+        for (; c < chunks.size(); c++, pos = 0) {
+            Chunk chunk = chunks.get(c);
+            for (; pos < chunk.size && chunk.days[pos] == day; pos++, index++) {
+                if (chunk.ids[pos] == id) return index;
+            }
+            if (pos < chunk.size) return -1;
+        }
+        return -1;
+    }
+
+    @Override
+    public List<LogEntry> entriesOn(int day) {
+        int c = firstChunkEndingAtOrAfter(day);
+        if (c == chunks.size()) return Collections.emptyList();
+        int pos = lowerBound(chunks.get(c), day);
+        int count = 0;
+        for (int i = c; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            int p = i == c ? pos : 0;
+            while (p < chunk.size && chunk.days[p] == day) {
+                p++;
+                count++;
+            }
+            if (p < chunk.size) break;
+        }
+        return count == 0 ? Collections.emptyList() : new DayView(c, pos, count);
+    }
+
+    @Override
+    public void forEachDay(int fromDay, int toDay, DayVisitor visitor) {
+        if (fromDay > toDay) return;
+        int c = firstChunkEndingAtOrAfter(fromDay);
+        if (c == chunks.size()) return;
+        int pos = lowerBound(chunks.get(c), fromDay);
+        int runChunk = c;
+        int runPos = pos;
+        int runCount = 0;
+        int runDay = 0;
+        for (; c < chunks.size(); c++, pos = 0) {
+            Chunk chunk = chunks.get(c);
+            for (; pos < chunk.size; pos++) {
+                int day = chunk.days[pos];
+                if (day > toDay) {
+                    if (runCount > 0) visitor.visit(runDay, new DayView(runChunk, runPos, runCount));
+                    return;
+                }
+                if (runCount > 0 && day != runDay) {
+                    visitor.visit(runDay, new DayView(runChunk, runPos, runCount));
+                    runCount = 0;
+                }
+                if (runCount == 0) {
+                    runChunk = c;
+                    runPos = pos;
+                    runDay = day;
+                }
+                runCount++;
+            }
+        }
+        if (runCount > 0) visitor.visit(runDay, new DayView(runChunk, runPos, runCount));
+    }
+
+    @Override
+    public void forEachRecord(int fromDay, int toDay, RecordVisitor visitor) {
+        if (fromDay > toDay) return;
+        int c = firstChunkEndingAtOrAfter(fromDay);
+        if (c == chunks.size()) return;
+        int pos = lowerBound(chunks.get(c), fromDay);
+        for (; c < chunks.size(); c++, pos = 0) {
+            Chunk chunk = chunks.get(c);
+            int[] days = chunk.days;
+            int[] foodColumn = chunk.foods;
+            int[] servings = chunk.servings;
+            for (; pos < chunk.size; pos++) {
+                if (days[pos] > toDay) return;
+                visitor.visit(days[pos], foods.get(foodColumn[pos]), servings[pos]);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int ordinalOf(Food food) {
+        Integer ordinal = ordinals.get(food);
+        if (ordinal == null) {
+            ordinal = foods.size();
+            foods.add(food);
+            ordinals.put(food, ordinal);
+        }
+        return ordinal;
+    }
+
+    // Moves the upper half of chunk c into a new chunk right after it
+    private Chunk split(int c) {
+        Chunk lower = chunks.get(c);
+        Chunk upper = new Chunk();
+        int half = lower.size / 2;
+        upper.size = lower.size - half;
+        System.arraycopy(lower.days, half, upper.days, 0, upper.size);
+        System.arraycopy(lower.foods, half, upper.foods, 0, upper.size);
+        System.arraycopy(lower.servings, half, upper.servings, 0, upper.size);
+        System.arraycopy(lower.ids, half, upper.ids, 0, upper.size);
+        lower.size = half;
+        chunks.add(c + 1, upper);
+        return upper;
+    }
+
+    // Last chunk whose first day is at or before day, or -1
+    private int lastChunkStartingAtOrBefore(int day) {
+        int lo = 0;
+        int hi = chunks.size() - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            if (chunks.get(mid).days[0] <= day) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // First chunk whose last day is at or after day, or chunks.size()
+    private int firstChunkEndingAtOrAfter(int day) {
+        int lo = 0;
+        int hi = chunks.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            Chunk chunk = chunks.get(mid);
+            if (chunk.days[chunk.size - 1] >= day) {
+                hi = mid;
+            } else {
+                lo = mid + 1;
+            }
+        }
+        return lo;
+    }
+
+    private static int lowerBound(Chunk chunk, int day) {
+        int lo = 0;
+        int hi = chunk.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (chunk.days[mid] < day) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int upperBound(Chunk chunk, int day) {
+        int lo = 0;
+        int hi = chunk.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (chunk.days[mid] <= day) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    // Flyweight list over a run of records; a day's run usually sits in one chunk but may
+    // continue into the next ones
+    private final class DayView extends AbstractList<LogEntry> {
+        private final int startChunk;
+        private final int startPos;
+        private final int count;
+
+        DayView(int startChunk, int startPos, int count) {
+            this.startChunk = startChunk;
+            this.startPos = startPos;
+            this.count = count;
+        }
+
+        @Override
+        public LogEntry get(int index) {
+            if (index < 0 || index >= count) throw new IndexOutOfBoundsException(index);
+            int c = startChunk;
+            int pos = startPos + index;
+            while (pos >= chunks.get(c).size) {
+                pos -= chunks.get(c).size;
+                c++;
+            }
+            Chunk chunk = chunks.get(c);
+            return new LogEntry(chunk.ids[pos], foods.get(chunk.foods[pos]), chunk.servings[pos]);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
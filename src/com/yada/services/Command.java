@@ -1,6 +1,26 @@
 package com.yada.services;
 
-// Simple command interface for undo functionality
+// A reversible change kept by UndoManager. Commands hold what they changed by identity (entry
+// ids, food objects), never by list position, so they stay valid whatever happened since.
+// Either may refuse with IllegalStateException, changing nothing, when the change can no longer
+// be applied (e.g. another food has taken a restored food's id).
 public interface Command {
     void undo();
+
+    // Applies the change again after undo()
+    void redo();
+
+    // What the change was, e.g. "log entry addition for 2024-01-01"
+    String describe();
+
+    // Rough heap bytes the command keeps alive, counted against the history's memory cap
+    default long footprint() {
+        return 64;
+    }
+
+    // Folds next, added right after this command in the same group, into this one; false
+    // when the two cannot be combined
+    default boolean mergeWith(Command next) {
+        return false;
+    }
 }
@@ -0,0 +1,69 @@
+package com.yada.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Commands undone and redone as one step: undo runs them newest first, redo oldest first
+public class CommandGroup implements Command {
+    private final String description;
+    private final List<Command> commands = new ArrayList<>();
+
+    public CommandGroup(String description) {
+        this.description = description;
+    }
+
+    public void add(Command command) {
+        if (!commands.isEmpty() && commands.get(commands.size() - 1).mergeWith(command)) return;
+        commands.add(command);
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    // A command that refuses (IllegalStateException) rolls back the ones already undone, so
+    // the group stays all or nothing
+    @Override
+    public void undo() {
+        int i = commands.size() - 1;
+        try {
+            for (; i >= 0; i--) {
+                commands.get(i).undo();
+            }
+        } catch (IllegalStateException e) {
+            for (int j = i + 1; j < commands.size(); j++) {
+                commands.get(j).redo();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void redo() {
+        int i = 0;
+        try {
+            for (; i < commands.size(); i++) {
+                commands.get(i).redo();
+            }
+        } catch (IllegalStateException e) {
+            for (int j = i - 1; j >= 0; j--) {
+                commands.get(j).undo();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public String describe() {
+        return description;
+    }
+
+    @Override
+    public long footprint() {
+        long total = 32 + 8L * commands.size();
+        for (Command command : commands) {
+            total += command.footprint();
+        }
+        return total;
+    }
+}
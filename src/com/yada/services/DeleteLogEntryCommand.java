@@ -0,0 +1,31 @@
+package com.yada.services;
+
+import com.yada.models.LogEntry;
+
+// Undoes a log entry deletion by adding the entry back under the same id
+public class DeleteLogEntryCommand implements Command {
+    private final LogManager logManager;
+    private final String date;
+    private final LogEntry removed;
+
+    public DeleteLogEntryCommand(LogManager logManager, String date, LogEntry removed) {
+        this.logManager = logManager;
+        this.date = date;
+        this.removed = removed;
+    }
+
+    @Override
+    public void undo() {
+        logManager.addLogEntry(date, removed);
+    }
+
+    @Override
+    public void redo() {
+        logManager.deleteLogEntryById(date, removed.getId());
+    }
+
+    @Override
+    public String describe() {
+        return "deletion of log entry for " + date;
+    }
+}
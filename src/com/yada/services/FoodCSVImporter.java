@@ -1,12 +1,21 @@
 package com.yada.services;
 
 import com.yada.models.Food;
+import com.yada.utils.Validator;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 public class FoodCSVImporter implements FoodImporter{
+    // Bulk mode tuning: lines handed to a parser task, and foods committed per database batch
+    private static final int CHUNK_LINES = 8192;
+    private static final int COMMIT_BATCH = 16384;
 
 //    private static final Set<String> ID_HEADERS = Set.of("id", "name", "foodname", "food_name", "title");
 //    private static final Set<String> CAL_HEADERS = Set.of("cal", "calories", "energy", "kcal", "calorie");
@@ -27,6 +36,9 @@ public class FoodCSVImporter implements FoodImporter{
             int calIdx = headerMap.get("calories");
             int kwIdx = headerMap.get("keywords");
 
+            // Imported foods are committed together at the end; their ids are tracked for duplicates
+            List<Food> imported = new ArrayList<>();
+            Set<String> importedIds = new HashSet<>();
             String line;
             while ((line = reader.readLine()) != null) {
                 String[] tokens = line.split(",", -1); // -1 keeps trailing empty fields
@@ -42,14 +54,6 @@ public class FoodCSVImporter implements FoodImporter{
                     continue;
                 }
 
-                Food results = db.findFoodById(id);
-                if(results != null){
-                    System.out.println("Skipping entry with duplicate ID: " + id);
-                    continue;
-                }
-
-                int calories = extractCalories(tokens[calIdx]);
-
                 List<String> keywords = new ArrayList<>();
                 if (kwIdx != -1 && kwIdx < tokens.length) {
                     String rawKeywords = tokens[kwIdx];
@@ -61,9 +65,23 @@ public class FoodCSVImporter implements FoodImporter{
                     }
                 }
 
+                // Same rules as the bulk path, so the foods file format stays intact
+                if (!Validator.isValidId(id) || (!keywords.isEmpty() && !Validator.isValidKeywordList(keywords))) {
+                    System.out.println("Skipping entry with invalid ID or keywords: " + id);
+                    continue;
+                }
+
+                if(db.containsFood(id) || !importedIds.add(FoodDatabase.normalizeId(id))){
+                    System.out.println("Skipping entry with duplicate ID: " + id);
+                    continue;
+                }
+
+                int calories = extractCalories(tokens[calIdx]);
+
                 Food food = new Food(id, keywords, calories);
-                db.addBasicFood(food);
+                imported.add(food);
             }
+            db.addBasicFoods(imported);
 
             System.out.println("Import completed.");
         } catch (IOException e) {
@@ -71,6 +89,266 @@ public class FoodCSVImporter implements FoodImporter{
         }
     }
 
+    // High-throughput mode for large dumps. Chunks of lines are parsed in parallel with a
+    // quote-aware tokenizer, duplicates are checked against a set of ids built once, and
+    // foods are committed in batches. Skips are counted and reported once at the end.
+    public void importFoodsBulk(String filePath, FoodDatabase db) {
+        runBulk(filePath, db, FoodCSVImporter::askUserForHeaderMapping, false);
+    }
+
+    // Unattended import through the bulk path; columns come from the mapping or the alias sets
+    @Override
+    public ImportResult importFoods(String filePath, FoodDatabase db, ImportMapping mapping) {
+        return runBulk(filePath, db, headers -> {
+            ImportMapping resolved = mapping != null ? mapping : ImportMapping.autoDetect(Arrays.asList(headers));
+            return resolved == null ? null : resolved.toColumnIndexes(headers);
+        }, true);
+    }
+
+    private ImportResult runBulk(String filePath, FoodDatabase db,
+                                 Function<String[], Map<String, Integer>> headerMapper, boolean quiet) {
+        ImportResult result = new ImportResult(filePath);
+        long start = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        BulkStats stats = new BulkStats();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(filePath), 1 << 16)) {
+            String headerLine = readRecord(reader);
+            if (headerLine == null) {
+                result.setError("CSV is empty.");
+                if (!quiet) System.err.println("CSV is empty.");
+                return result;
+            }
+
+            String[] headers = parseCsvLine(headerLine).toArray(new String[0]);
+            Map<String, Integer> headerMap = headerMapper.apply(headers);
+            if (headerMap == null) {
+                result.setError("no column matches the id/calories mapping");
+                return result;
+            }
+            int idIdx = headerMap.get("id");
+            int calIdx = headerMap.get("calories");
+            int kwIdx = headerMap.get("keywords");
+
+            Set<String> knownIds = db.copyFoodIds();
+            List<Food> batch = new ArrayList<>(COMMIT_BATCH);
+            // Chunks are committed in file order, so the first occurrence of an id wins as before
+            Deque<Future<ParsedChunk>> inFlight = new ArrayDeque<>();
+
+            // Chunks hold whole records, so one never ends inside a quoted field
+            List<String> lines = new ArrayList<>(CHUNK_LINES);
+            String line;
+            while ((line = readRecord(reader)) != null) {
+                lines.add(line);
+                if (lines.size() == CHUNK_LINES) {
+                    List<String> chunk = lines;
+                    inFlight.add(pool.submit(() -> parseChunk(chunk, idIdx, calIdx, kwIdx)));
+                    lines = new ArrayList<>(CHUNK_LINES);
+                    // Bound the number of parsed chunks held in memory
+                    if (inFlight.size() >= threads * 2) {
+                        commitChunk(inFlight.poll().get(), knownIds, batch, db, stats);
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                List<String> chunk = lines;
+                inFlight.add(pool.submit(() -> parseChunk(chunk, idIdx, calIdx, kwIdx)));
+            }
+            while (!inFlight.isEmpty()) {
+                commitChunk(inFlight.poll().get(), knownIds, batch, db, stats);
+            }
+            if (!batch.isEmpty()) {
+                db.addBasicFoods(batch);
+            }
+
+            if (!quiet) {
+                double seconds = Math.max((System.nanoTime() - start) / 1e9, 1e-9);
+                System.out.println("Bulk import completed.");
+                System.out.printf("Rows read: %d, imported: %d (%.0f rows/s)%n", stats.rows, stats.imported, stats.rows / seconds);
+                System.out.printf("Skipped: %d malformed, %d empty ID, %d invalid ID or keywords, %d duplicate ID; %d calorie values defaulted to 0%n",
+                        stats.malformed, stats.emptyId, stats.invalid, stats.duplicate, stats.badCalories);
+            }
+        } catch (IOException e) {
+            result.setError("Error reading CSV: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.setError("CSV import interrupted.");
+        } catch (ExecutionException e) {
+            result.setError("Error parsing CSV: " + e.getCause().getMessage());
+        } finally {
+            pool.shutdownNow();
+        }
+        if (!quiet && result.getError() != null) {
+            System.err.println(result.getError());
+        }
+        result.addImported(stats.imported);
+        result.addSkipped(stats.malformed + stats.emptyId + stats.invalid + stats.duplicate);
+        return result;
+    }
+
+    // Result of parsing one chunk; rejected rows are left as null and only counted
+    private static class ParsedChunk {
+        final Food[] foods;
+        int malformed;
+        int emptyId;
+        int invalid;
+        int badCalories;
+
+        ParsedChunk(int size) {
+            foods = new Food[size];
+        }
+    }
+
+    private static class BulkStats {
+        long rows;
+        long imported;
+        long malformed;
+        long emptyId;
+        long invalid;
+        long duplicate;
+        long badCalories;
+    }
+
+    private static ParsedChunk parseChunk(List<String> lines, int idIdx, int calIdx, int kwIdx) {
+        ParsedChunk chunk = new ParsedChunk(lines.size());
+        int required = Math.max(idIdx, Math.max(calIdx, kwIdx));
+        for (int i = 0; i < lines.size(); i++) {
+            List<String> tokens = parseCsvLine(lines.get(i));
+            if (tokens.size() <= required) {
+                chunk.malformed++;
+                continue;
+            }
+
+            String id = tokens.get(idIdx).trim();
+            if (id.isEmpty()) {
+                chunk.emptyId++;
+                continue;
+            }
+
+            List<String> keywords = kwIdx == -1 ? new ArrayList<>() : splitKeywords(tokens.get(kwIdx));
+            // Quoted fields may hold ';', ',' or ':', which would break the foods file format, so
+            // ids and keywords follow the same rules as foods added by hand (keywords stay optional)
+            if (!Validator.isValidId(id) || (!keywords.isEmpty() && !Validator.isValidKeywordList(keywords))) {
+                chunk.invalid++;
+                continue;
+            }
+
+            int calories = parseCalories(tokens.get(calIdx));
+            if (calories < 0) {
+                chunk.badCalories++;
+                calories = 0;
+            }
+
+            chunk.foods[i] = new Food(id, keywords, calories);
+        }
+        return chunk;
+    }
+
+    private static void commitChunk(ParsedChunk chunk, Set<String> knownIds, List<Food> batch,
+                                    FoodDatabase db, BulkStats stats) {
+        stats.rows += chunk.foods.length;
+        stats.malformed += chunk.malformed;
+        stats.emptyId += chunk.emptyId;
+        stats.invalid += chunk.invalid;
+        stats.badCalories += chunk.badCalories;
+        for (Food food : chunk.foods) {
+            if (food == null) continue;
+            if (!knownIds.add(FoodDatabase.normalizeId(food.getId()))) {
+                stats.duplicate++;
+                continue;
+            }
+            batch.add(food);
+            stats.imported++;
+            if (batch.size() == COMMIT_BATCH) {
+                db.addBasicFoods(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    // Next record, or null at the end. A quoted field may span lines (RFC 4180), so lines are
+    // joined, with the line break kept, until every quote opened in the record is closed.
+    static String readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null || !opensQuote(line, false)) return line;
+        StringBuilder record = new StringBuilder(line);
+        boolean quoted = true;
+        while (quoted && (line = reader.readLine()) != null) {
+            record.append('\n').append(line);
+            quoted = opensQuote(line, true);
+        }
+        return record.toString();
+    }
+
+    // Whether a quoted field is still open at the end of line, given whether one was open at
+    // its start; a "" escape toggles twice and so changes nothing
+    private static boolean opensQuote(String line, boolean quoted) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') quoted = !quoted;
+        }
+        return quoted;
+    }
+
+    // Splits one CSV record, honouring double-quoted fields and "" escapes inside them
+    static List<String> parseCsvLine(String line) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                tokens.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        tokens.add(field.toString());
+        return tokens;
+    }
+
+    // Regex-free equivalent of extractCalories; returns -1 when nothing numeric is found
+    private static int parseCalories(String rawCal) {
+        StringBuilder digits = new StringBuilder(rawCal.length());
+        for (int i = 0; i < rawCal.length(); i++) {
+            char c = rawCal.charAt(i);
+            if ((c >= '0' && c <= '9') || c == '.') digits.append(c);
+        }
+        try {
+            return (int) Math.round(Double.parseDouble(digits.toString()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Regex-free equivalent of splitting on [|;/,] and dropping blank parts
+    private static List<String> splitKeywords(String raw) {
+        List<String> keywords = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= raw.length(); i++) {
+            if (i == raw.length() || "|;/,".indexOf(raw.charAt(i)) >= 0) {
+                String part = raw.substring(start, i).trim();
+                if (!part.isEmpty()) keywords.add(part);
+                start = i + 1;
+            }
+        }
+        return keywords;
+    }
+
     private static Map<String, Integer> askUserForHeaderMapping(String[] headers) {
         Scanner scanner = new Scanner(System.in);
         Map<String, Integer> finalMapping = new HashMap<>();
@@ -2,170 +2,571 @@ package com.yada.services;
 
 import com.yada.models.CompositeFood;
 import com.yada.models.Food;
+import com.yada.models.SymbolTable;
 
 import java.io.*;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
+// Safe for concurrent use. Readers work on an immutable snapshot read from a volatile field,
+// so lookups, searches and listings never lock and never see a half-applied change. Writers
+// are serialized; each one edits a copy-on-write working copy (only the touched pages and
+// posting lists are copied) and publishes the result as the next snapshot in one store.
 public class FoodDatabase {
-    private List<Food> basicFoods;
-    private List<CompositeFood> compositeFoods;
-    private final String foodFile = "data/foods.txt";
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    // Slot of every food in its list; only touched by writers, under the lock
+    private final Map<Food, Integer> slots = new IdentityHashMap<>();
+    // Typeahead terms of each food id and of each keyword in use, with the number of foods
+    // carrying the keyword; also writer-only
+    private final Map<Food, TypeaheadIndex.Term> idTerms = new IdentityHashMap<>();
+    private final Map<Integer, TypeaheadIndex.Term> keywordTerms = new HashMap<>();
+    private final Map<Integer, Integer> keywordCounts = new HashMap<>();
+    private final String foodFile;
+    // Foods on disk, one segment per bucket of ids (see bucketOf)
+    private final SegmentStore store;
+    // Buckets changed since they were last saved; guarded by the writer lock
+    private final BitSet dirtyBuckets = new BitSet(BUCKETS);
+    // Told after every published change, e.g. to schedule an autosave
+    private volatile Runnable changeListener;
+    // Serializes saves; not the writer lock, so saving never blocks changes
+    private final Object saveLock = new Object();
+    // Per-thread listener for added foods, see setAdditionListener
+    private final ThreadLocal<Consumer<List<Food>>> additionListener = new ThreadLocal<>();
+    private static final int BUCKETS = 64;
+
+    // One published version of the database
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(PagedArray.empty(), PagedArray.empty(), 0, 0,
+                PagedArray.empty(), KeywordIndex.empty(), KeywordIndex.empty(), TypeaheadIndex.empty());
+
+        // Foods by slot, in insertion order; removed foods leave a null slot
+        final PagedArray<Food> basicFoods;
+        final PagedArray<Food> compositeFoods;
+        final int basicCount;
+        final int compositeCount;
+        // Food by folded id ordinal (null where none)
+        final PagedArray<Food> foodIndex;
+        // Keyword postings, one index per list so search results keep basic foods first
+        final KeywordIndex basicKeywordIndex;
+        final KeywordIndex compositeKeywordIndex;
+        // Prefix and fuzzy completion over food ids and keywords
+        final TypeaheadIndex typeahead;
+
+        Snapshot(PagedArray<Food> basicFoods, PagedArray<Food> compositeFoods, int basicCount, int compositeCount,
+                 PagedArray<Food> foodIndex, KeywordIndex basicKeywordIndex, KeywordIndex compositeKeywordIndex,
+                 TypeaheadIndex typeahead) {
+            this.basicFoods = basicFoods;
+            this.compositeFoods = compositeFoods;
+            this.basicCount = basicCount;
+            this.compositeCount = compositeCount;
+            this.foodIndex = foodIndex;
+            this.basicKeywordIndex = basicKeywordIndex;
+            this.compositeKeywordIndex = compositeKeywordIndex;
+            this.typeahead = typeahead;
+        }
+    }
 
     public FoodDatabase() {
-        basicFoods = new ArrayList<>();
-        compositeFoods = new ArrayList<>();
+        this("data/foods.txt");
+    }
+
+    // Foods are saved in data/foods/ next to foodFile, which is only read until the first save
+    public FoodDatabase(String foodFile) {
+        this.foodFile = foodFile;
+        this.store = new SegmentStore(SegmentStore.dirFor(foodFile), Paths.get(foodFile));
+    }
+
+    public String getFoodFile() {
+        return foodFile;
     }
 
-    // Loads foods from a text file.
+    // The file that changes on every save, e.g. to tell whether a cache of the foods is stale
+    public String getStorageFile() {
+        return store.currentFile().toString();
+    }
+
+    // Loads foods from the segment files (or the legacy foods.txt).
     // Format for basic foods: B;id;calories;keyword1,keyword2,...
     // Format for composite foods: C;id;keyword1,keyword2,...;component1:amount,component2:amount
     public void loadFoods() {
-        File file = new File(foodFile);
-        if (!file.exists()) {
+        if (!store.exists()) {
             System.out.println("Food file not found, starting with an empty database.");
             return;
         }
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) continue;
+        // Parsed foods are published together; components resolve against them as well. Buckets
+        // do not keep a composite after its components, so components are added once every
+        // line is parsed.
+        List<Food> loaded = new ArrayList<>();
+        Map<String, Food> loadedIds = new HashMap<>();
+        Map<CompositeFood, String[]> componentData = new LinkedHashMap<>();
+        try {
+            store.read(line -> {
                 String[] parts = line.split(";");
 
+                Food food = null;
                 if (parts[0].equals("B")) {
                     // Basic food: B;id;calories;keyword1,keyword2,...
                     String id = parts[1];
                     int calories = Integer.parseInt(parts[2]);
-                    List<String> keywords = Arrays.asList(parts[3].split(","));
-                    basicFoods.add(new Food(id, keywords, calories));
+                    // Imported foods may have no keywords, which leaves the last field empty
+                    List<String> keywords = parts.length > 3 ? Arrays.asList(parts[3].split(",")) : new ArrayList<>();
+                    food = new Food(id, keywords, calories);
                 } else if (parts[0].equals("C")) {
                     // Composite food: C;id;keyword1,keyword2,...;component1-id:servings,component2-id:servings,...
                     String id = parts[1];
                     List<String> keywords = Arrays.asList(parts[2].split(","));
+                    CompositeFood compositeFood = new CompositeFood(id, keywords);
+                    // Component details, if any, are resolved below
+                    if (parts.length > 3) componentData.put(compositeFood, parts[3].split(","));
+                    food = compositeFood;
+                }
+                if (food != null) {
+                    loaded.add(food);
+                    loadedIds.putIfAbsent(normalizeId(food.getId()), food);
+                }
+            });
+        } catch (Exception e) {
+            System.out.println("Error loading foods: " + e.getMessage());
+        }
+        for (Map.Entry<CompositeFood, String[]> entry : componentData.entrySet()) {
+            for (String component : entry.getValue()) {
+                String[] componentParts = component.split(":");
+                if (componentParts.length == 2) {
+                    String componentId = componentParts[0];
+                    int servings = Integer.parseInt(componentParts[1]);
 
-                    // Check if component details exist
-                    if (parts.length > 3) {
-                        String[] componentData = parts[3].split(",");
-                        CompositeFood compositeFood = new CompositeFood(id, keywords);
-
-                        for (String component : componentData) {
-                            String[] componentParts = component.split(":");
-                            if (componentParts.length == 2) {
-                                String componentId = componentParts[0];
-                                int servings = Integer.parseInt(componentParts[1]);
-
-                                // Find the referenced component food
-                                Food foundFood = findFoodById(componentId);
-                                if (foundFood != null) {
-                                    compositeFood.addComponent(foundFood, servings);
-                                } else {
-                                    System.out.println("Warning: Component " + componentId + " not found for " + id);
-                                }
-                            }
-                        }
-                        compositeFoods.add(compositeFood);
+                    // Find the referenced component food
+                    Food foundFood = findFoodById(componentId);
+                    if (foundFood == null) foundFood = loadedIds.get(normalizeId(componentId));
+                    if (foundFood != null) {
+                        entry.getKey().addComponent(foundFood, servings);
                     } else {
-                        compositeFoods.add(new CompositeFood(id, keywords));
+                        System.out.println("Warning: Component " + componentId + " not found for " + entry.getKey().getId());
                     }
                 }
             }
-        } catch (Exception e) {
-            System.out.println("Error loading foods: " + e.getMessage());
         }
+        addSavedFoods(componentsFirst(loaded));
     }
 
-    // Helper function to find food by ID
-    public Food findFoodById(String id) {
-        for (Food food : basicFoods) {
-            if (food.getId().equalsIgnoreCase(id))
-                return food;
+    // Adds foods read from disk, which the next save need not write back
+    synchronized void addSavedFoods(List<? extends Food> foods) {
+        BitSet unsaved = (BitSet) dirtyBuckets.clone();
+        addFoods(foods);
+        dirtyBuckets.clear();
+        dirtyBuckets.or(unsaved);
+    }
+
+    // Orders foods so every composite follows its components, in passes: each pass takes the
+    // composites whose components are all placed, keeping their relative order. A composite
+    // left in a cycle is appended as is.
+    private static List<Food> componentsFirst(List<Food> foods) {
+        Set<Food> placed = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Food> ordered = new ArrayList<>(foods.size());
+        List<CompositeFood> waiting = new ArrayList<>();
+        for (Food food : foods) {
+            if (food instanceof CompositeFood cf) {
+                waiting.add(cf);
+            } else {
+                ordered.add(food);
+                placed.add(food);
+            }
         }
-        for (CompositeFood cf : compositeFoods) {
-            if (cf.getId().equalsIgnoreCase(id))
-                return cf;
+        Set<Food> loaded = Collections.newSetFromMap(new IdentityHashMap<>());
+        loaded.addAll(foods);
+        while (!waiting.isEmpty()) {
+            List<CompositeFood> next = new ArrayList<>();
+            for (CompositeFood cf : waiting) {
+                boolean ready = true;
+                for (Food component : cf.getComponents().keySet()) {
+                    // Components already in the database count as placed
+                    if (loaded.contains(component) && !placed.contains(component)) {
+                        ready = false;
+                        break;
+                    }
+                }
+                if (ready) {
+                    ordered.add(cf);
+                    placed.add(cf);
+                } else {
+                    next.add(cf);
+                }
+            }
+            if (next.size() == waiting.size()) {
+                ordered.addAll(next);
+                break;
+            }
+            waiting = next;
         }
-        return null;
+        return ordered;
     }
 
-    // Saves the current food database to file.
+    // Finds a food by ID (case-insensitive) through the id index
+    public Food findFoodById(String id) {
+        if (id == null) return null;
+        return snapshot.foodIndex.get(SymbolTable.FOOD_IDS.findFolded(id));
+    }
+
+    public boolean containsFood(String id) {
+        return findFoodById(id) != null;
+    }
+
+    // Case folding used by the id index; importers use it to dedupe against a copy of the ids
+    public static String normalizeId(String id) {
+        return SymbolTable.FOOD_IDS.fold(id);
+    }
+
+    // Copy of the folded ids currently in the database
+    public Set<String> copyFoodIds() {
+        PagedArray<Food> index = snapshot.foodIndex;
+        Set<String> ids = new HashSet<>();
+        for (int key = 0; key < index.size(); key++) {
+            if (index.get(key) != null) ids.add(SymbolTable.FOOD_IDS.name(key));
+        }
+        return ids;
+    }
+
+    // Saves the buckets changed since the last save, from the current snapshot; safe to call
+    // from any thread while the database changes. The first save after loading foods.txt
+    // writes every bucket.
     public void saveFoods() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(foodFile))) {
-            for (Food food : basicFoods) {
-                writer.println("B;" + food.getId() + ";" + food.getCaloriesPerServing() + ";" + String.join(",", food.getKeywords()));
+        synchronized (saveLock) {
+            boolean complete = store.usesLegacyFile();
+            BitSet buckets;
+            synchronized (this) {
+                buckets = (BitSet) dirtyBuckets.clone();
+                dirtyBuckets.clear();
             }
-            for (CompositeFood cf : compositeFoods) {
-                String componentDetails = cf.getComponents().isEmpty() ? "" :
-                        ";" + cf.getComponents().entrySet().stream()
-                                .map(entry -> entry.getKey().getId() + ":" + entry.getValue())
-                                .collect(Collectors.joining(","));
-
-                writer.println("C;" + cf.getId() + ";" + String.join(",", cf.getKeywords()) + componentDetails);
+            if (complete) buckets.set(0, BUCKETS);
+            if (buckets.isEmpty()) return;
+            try {
+                store.write(bucketLines(snapshot, buckets), complete);
+            } catch (IOException e) {
+                System.out.println("Error saving foods: " + e.getMessage());
+                // Still unsaved; the next save tries again
+                synchronized (this) {
+                    dirtyBuckets.or(buckets);
+                }
             }
-        } catch (Exception e) {
-            System.out.println("Error saving foods: " + e.getMessage());
         }
     }
 
+    // Saves, then writes the whole catalog to file in the foods.txt format
+    public void exportFoods(String file) {
+        saveFoods();
+        try {
+            store.exportTo(Paths.get(file));
+        } catch (IOException e) {
+            System.out.println("Error exporting foods: " + e.getMessage());
+        }
+    }
+
+    // Lines of every food in the given buckets, by bucket name; a bucket with no foods left
+    // maps to an empty list. Scanning the snapshot is cheap next to writing it all out.
+    private static Map<String, List<String>> bucketLines(Snapshot current, BitSet buckets) {
+        Map<String, List<String>> lines = new HashMap<>();
+        for (int bucket = buckets.nextSetBit(0); bucket >= 0; bucket = buckets.nextSetBit(bucket + 1)) {
+            lines.put(bucketName(bucket), new ArrayList<>());
+        }
+        for (Food food : live(current.basicFoods, current.basicCount)) {
+            List<String> bucket = lines.get(bucketName(bucketOf(food)));
+            if (bucket == null) continue;
+            bucket.add("B;" + food.getId() + ";" + food.getCaloriesPerServing() + ";" + String.join(",", food.getKeywords()));
+        }
+        for (Food food : live(current.compositeFoods, current.compositeCount)) {
+            List<String> bucket = lines.get(bucketName(bucketOf(food)));
+            if (bucket == null) continue;
+            CompositeFood cf = (CompositeFood) food;
+            String componentDetails = cf.getComponents().isEmpty() ? "" :
+                    ";" + cf.getComponents().entrySet().stream()
+                            .map(entry -> entry.getKey().getId() + ":" + entry.getValue())
+                            .collect(Collectors.joining(","));
+
+            bucket.add("C;" + cf.getId() + ";" + String.join(",", cf.getKeywords()) + componentDetails);
+        }
+        return lines;
+    }
+
+    // Segment of a food: a hash of its folded id, so foods that share an id share a bucket
+    private static int bucketOf(Food food) {
+        return Math.floorMod(normalizeId(food.getId()).hashCode(), BUCKETS);
+    }
+
+    private static String bucketName(int bucket) {
+        return String.format("%02d", bucket);
+    }
+
     public void addBasicFood(Food food) {
-        basicFoods.add(food);
+        addFoods(List.of(food));
+    }
+
+    // Adds a batch of basic foods, e.g. one chunk of a bulk import
+    public void addBasicFoods(List<Food> foods) {
+        addFoods(foods);
     }
 
     public void addCompositeFood(CompositeFood compositeFood) {
-        compositeFoods.add(compositeFood);
+        addFoods(List.of(compositeFood));
     }
 
-    public void removeFood(Food food) {
-        if (food instanceof CompositeFood) {
-            compositeFoods.remove(food);
-        } else {
-            basicFoods.remove(food);
+    // Adds basic and composite foods in order and publishes them as one new snapshot
+    public synchronized void addFoods(List<? extends Food> foods) {
+        Batch batch = new Batch(snapshot);
+        for (Food food : foods) {
+            batch.add(food);
+            dirtyBuckets.set(bucketOf(food));
         }
-        // Also remove any CompositeFood that uses this food as a component
-        compositeFoods.removeIf(cf -> cf.getComponents().containsKey(food));
+        snapshot = batch.publish();
+        Consumer<List<Food>> listener = additionListener.get();
+        if (listener != null && !foods.isEmpty()) listener.accept(new ArrayList<>(foods));
+        changed();
     }
 
-    public List<Food> searchFoods(List<String> keywords, boolean all) {
-        List<Food> results = new ArrayList<>();
+    public void setChangeListener(Runnable listener) {
+        changeListener = listener;
+    }
+
+    private void changed() {
+        Runnable listener = changeListener;
+        if (listener != null) listener.run();
+    }
+
+    // Passes every batch of foods the calling thread adds from now on to listener, e.g. so an
+    // import can be undone; null stops it. Other threads' additions are not seen.
+    public void setAdditionListener(Consumer<List<Food>> listener) {
+        if (listener == null) additionListener.remove();
+        else additionListener.set(listener);
+    }
 
-        for (Food food : basicFoods) {
-            if (matchesKeywords(food.getKeywords(), keywords, all))
-                results.add(food);
+    // Removes a food and, transitively, every composite built on it by walking the
+    // reverse dependency edges. Returns the removed foods, the requested one first.
+    public List<Food> removeFood(Food food) {
+        return removeFoods(List.of(food));
+    }
+
+    // Removes foods and every composite built on any of them, publishing one snapshot.
+    // Returns the removed foods, the requested ones first; foods already gone are skipped.
+    public synchronized List<Food> removeFoods(Collection<? extends Food> foods) {
+        Set<Food> affected = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Food> order = new ArrayList<>();
+        Deque<Food> pending = new ArrayDeque<>();
+        for (Food food : foods) {
+            if (affected.add(food)) pending.add(food);
+        }
+        while (!pending.isEmpty()) {
+            Food current = pending.poll();
+            order.add(current);
+            for (CompositeFood parent : current.getDependents()) {
+                if (affected.add(parent)) pending.add(parent);
+            }
         }
-        for (CompositeFood cf : compositeFoods) {
-            if (matchesKeywords(cf.getKeywords(), keywords, all))
-                results.add(cf);
+
+        Batch batch = new Batch(snapshot);
+        List<Food> removed = new ArrayList<>();
+        for (Food f : order) {
+            if (batch.remove(f)) {
+                if (f instanceof CompositeFood cf) cf.detachFromComponents();
+                dirtyBuckets.set(bucketOf(f));
+                removed.add(f);
+            }
         }
+        snapshot = batch.publish();
+        changed();
+        return removed;
+    }
 
+    // Puts back a set returned by removeFood, e.g. when the removal is undone. Refuses, with
+    // IllegalStateException and nothing restored, when another food has taken one of the ids
+    // since (ids compare case-insensitively, as for every addition).
+    public synchronized void restoreFoods(List<Food> foods) {
+        for (Food f : foods) {
+            Food current = findFoodById(f.getId());
+            if (current != null && current != f) {
+                throw new IllegalStateException("Food '" + current.getId() + "' now uses the id of '" + f.getId() + "'.");
+            }
+        }
+        for (Food f : foods) {
+            if (f instanceof CompositeFood cf) cf.attachToComponents();
+        }
+        addFoods(foods);
+    }
+
+    // Searches the keyword postings; all = every keyword must match, otherwise any keyword
+    public List<Food> searchFoods(List<String> keywords, boolean all) {
+        Snapshot current = snapshot;
+        if (keywords.isEmpty()) {
+            return all ? getAllFoods(current) : new ArrayList<>();
+        }
+        int[] basic = all ? current.basicKeywordIndex.matchAll(keywords) : current.basicKeywordIndex.matchAny(keywords);
+        int[] composite = all ? current.compositeKeywordIndex.matchAll(keywords) : current.compositeKeywordIndex.matchAny(keywords);
+        List<Food> results = new ArrayList<>(basic.length + composite.length);
+        for (int slot : basic) results.add(current.basicFoods.get(slot));
+        for (int slot : composite) results.add(current.compositeFoods.get(slot));
         return results;
     }
 
-    // Helper function to check if food keywords match search keywords
-    private boolean matchesKeywords(List<String> foodKeywords, List<String> searchKeywords, boolean all) {
-        if (all) {
-            // All keywords must match
-            return searchKeywords.stream()
-                    .allMatch(sk -> foodKeywords.stream()
-                            .anyMatch(fk -> fk.equalsIgnoreCase(sk)));
-        } else {
-            // At least one keyword must match
-            return searchKeywords.stream()
-                    .anyMatch(sk -> foodKeywords.stream()
-                            .anyMatch(fk -> fk.equalsIgnoreCase(sk)));
+    public SearchPage searchRanked(List<String> keywords, boolean all, int limit, String cursor) {
+        return searchRanked(keywords, all, limit, cursor, null);
+    }
+
+    // The best limit foods for the keywords, after cursor (null for the first page). A food
+    // scores the IDF, ln(1 + foods / foods carrying it), of every query keyword it carries,
+    // plus ln(1 + times logged) when logCounts is given, so rare keywords, foods matching
+    // more of the query and foods the user eats often come first; ties go by id. Posting
+    // lists are merged in one pass and only the best limit + 1 hits are kept, in a heap.
+    public SearchPage searchRanked(List<String> keywords, boolean all, int limit, String cursor,
+                                   ToIntFunction<Food> logCounts) {
+        Snapshot current = snapshot;
+        Ranking ranking = new Ranking(Math.max(limit, 1), cursor, logCounts);
+        Set<Integer> terms = KeywordIndex.normalize(keywords);
+        int foods = current.basicCount + current.compositeCount;
+        double[] idf = new double[terms.size()];
+        int i = 0;
+        for (int term : terms) {
+            int[] basic = current.basicKeywordIndex.postings(term);
+            int[] composite = current.compositeKeywordIndex.postings(term);
+            int carrying = (basic == null ? 0 : basic.length) + (composite == null ? 0 : composite.length);
+            idf[i++] = carrying == 0 ? 0 : Math.log(1 + (double) foods / carrying);
+        }
+        if (!terms.isEmpty()) {
+            rank(current.basicKeywordIndex, current.basicFoods, terms, idf, all, ranking);
+            rank(current.compositeKeywordIndex, current.compositeFoods, terms, idf, all, ranking);
+        }
+        return ranking.page();
+    }
+
+    // Merges the query's posting lists of one index, offering every matching food to ranking
+    private static void rank(KeywordIndex index, PagedArray<Food> foods, Set<Integer> terms, double[] idf,
+                             boolean all, Ranking ranking) {
+        int[][] lists = new int[terms.size()][];
+        int i = 0;
+        for (int term : terms) {
+            lists[i] = index.postings(term);
+            if (lists[i] == null) {
+                if (all) return;
+                lists[i] = new int[0];
+            }
+            i++;
+        }
+        int[] heads = new int[lists.length];
+        while (true) {
+            int slot = Integer.MAX_VALUE;
+            for (int t = 0; t < lists.length; t++) {
+                if (heads[t] < lists[t].length) slot = Math.min(slot, lists[t][heads[t]]);
+            }
+            if (slot == Integer.MAX_VALUE) return;
+            double score = 0;
+            int matched = 0;
+            for (int t = 0; t < lists.length; t++) {
+                if (heads[t] < lists[t].length && lists[t][heads[t]] == slot) {
+                    score += idf[t];
+                    matched++;
+                    heads[t]++;
+                }
+            }
+            if (!all || matched == lists.length) ranking.offer(foods.get(slot), score, matched);
         }
     }
 
+    // Keeps the best hits ranked after a cursor: a min-heap of at most limit + 1 hits, the
+    // extra one only telling whether another page follows
+    private static final class Ranking {
+        // Best first: higher score, then smaller id
+        private static final Comparator<SearchPage.Hit> ORDER = Comparator
+                .comparingDouble((SearchPage.Hit hit) -> -hit.getScore())
+                .thenComparing(hit -> hit.getFood().getId());
+
+        private final int limit;
+        private final ToIntFunction<Food> logCounts;
+        private final PriorityQueue<SearchPage.Hit> heap = new PriorityQueue<>(ORDER.reversed());
+        // Score and id of the last hit of the previous page; afterId is null on the first page
+        private double afterScore;
+        private String afterId;
+
+        Ranking(int limit, String cursor, ToIntFunction<Food> logCounts) {
+            this.limit = limit;
+            this.logCounts = logCounts;
+            if (cursor != null && !cursor.isEmpty()) decodeCursor(cursor);
+        }
+
+        void offer(Food food, double score, int matched) {
+            if (logCounts != null) score += Math.log1p(logCounts.applyAsInt(food));
+            if (afterId != null && (score > afterScore || (score == afterScore && food.getId().compareTo(afterId) <= 0))) {
+                return;
+            }
+            SearchPage.Hit hit = new SearchPage.Hit(food, score, matched);
+            if (heap.size() <= limit) {
+                heap.add(hit);
+            } else if (ORDER.compare(hit, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(hit);
+            }
+        }
+
+        SearchPage page() {
+            List<SearchPage.Hit> hits = new ArrayList<>(heap);
+            hits.sort(ORDER);
+            if (hits.size() <= limit) return new SearchPage(hits, null);
+            hits = hits.subList(0, limit);
+            SearchPage.Hit last = hits.get(limit - 1);
+            return new SearchPage(new ArrayList<>(hits), encodeCursor(last));
+        }
+
+        // The score's exact bits and the id, so the next page resumes at exactly this hit
+        private static String encodeCursor(SearchPage.Hit hit) {
+            return Long.toHexString(Double.doubleToLongBits(hit.getScore())) + ":" + hit.getFood().getId();
+        }
+
+        private void decodeCursor(String cursor) {
+            int colon = cursor.indexOf(':');
+            try {
+                afterScore = Double.longBitsToDouble(Long.parseUnsignedLong(cursor.substring(0, colon), 16));
+                afterId = cursor.substring(colon + 1);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        }
+    }
+
+    // Type-ahead suggestions for a partly typed food id or keyword: completions of the
+    // input first, then near misses (see TypeaheadIndex)
+    public List<TypeaheadIndex.Suggestion> suggest(String partial, int limit) {
+        return snapshot.typeahead.suggest(partial, limit);
+    }
+
     public List<Food> getAllFoods() {
-        List<Food> all = new ArrayList<>();
-        all.addAll(basicFoods);
-        all.addAll(compositeFoods);
+        return getAllFoods(snapshot);
+    }
+
+    private static List<Food> getAllFoods(Snapshot current) {
+        List<Food> all = new ArrayList<>(current.basicCount + current.compositeCount);
+        all.addAll(live(current.basicFoods, current.basicCount));
+        all.addAll(live(current.compositeFoods, current.compositeCount));
         return all;
     }
 
     // List all Basic Foods
     public void listBasicFoods() {
+        List<Food> basicFoods = live(snapshot.basicFoods, snapshot.basicCount);
         System.out.println("\n--- Basic Foods in Database ---");
         if (basicFoods.isEmpty()) {
             System.out.println("No basic foods found.");
@@ -178,13 +579,134 @@ public class FoodDatabase {
 
     // List all Composite Foods
     public void listCompositeFoods() {
+        List<Food> compositeFoods = live(snapshot.compositeFoods, snapshot.compositeCount);
         System.out.println("\n--- Composite Foods in Database ---");
         if (compositeFoods.isEmpty()) {
             System.out.println("No composite foods found.");
         } else {
-            for (CompositeFood cf : compositeFoods) {
+            for (Food cf : compositeFoods) {
                 System.out.println(cf.toString());
             }
         }
     }
+
+    // Foods in slot order, skipping removed slots
+    private static List<Food> live(PagedArray<Food> foods, int count) {
+        List<Food> list = new ArrayList<>(count);
+        for (int slot = 0; slot < foods.size(); slot++) {
+            Food food = foods.get(slot);
+            if (food != null) list.add(food);
+        }
+        return list;
+    }
+
+    // Working copy of one snapshot, owned by the writer holding the lock
+    private final class Batch {
+        private PagedArray.Editor<Food> basicFoods;
+        private PagedArray.Editor<Food> compositeFoods;
+        private int basicCount;
+        private int compositeCount;
+        private final PagedArray.Editor<Food> foodIndex;
+        private KeywordIndex.Editor basicKeywords;
+        private KeywordIndex.Editor compositeKeywords;
+        private final TypeaheadIndex.Editor typeahead;
+
+        Batch(Snapshot base) {
+            basicFoods = base.basicFoods.edit();
+            compositeFoods = base.compositeFoods.edit();
+            basicCount = base.basicCount;
+            compositeCount = base.compositeCount;
+            foodIndex = base.foodIndex.edit();
+            basicKeywords = base.basicKeywordIndex.edit();
+            compositeKeywords = base.compositeKeywordIndex.edit();
+            typeahead = base.typeahead.edit();
+        }
+
+        void add(Food food) {
+            if (slots.containsKey(food)) return;
+            boolean composite = food instanceof CompositeFood;
+            int slot = composite ? compositeFoods.add(food) : basicFoods.add(food);
+            slots.put(food, slot);
+            if (composite) {
+                compositeKeywords.add(slot, food);
+                compositeCount++;
+            } else {
+                basicKeywords.add(slot, food);
+                basicCount++;
+            }
+            // The first food registered under an id wins, matching the old linear lookup order
+            if (foodIndex.get(food.getIdKey()) == null) foodIndex.set(food.getIdKey(), food);
+
+            idTerms.put(food, typeahead.add(food.getId(), food));
+            for (int key : distinctKeywords(food)) {
+                if (keywordCounts.merge(key, 1, Integer::sum) == 1) {
+                    keywordTerms.put(key, typeahead.add(SymbolTable.KEYWORDS.name(key), null));
+                }
+            }
+        }
+
+        boolean remove(Food food) {
+            Integer slot = slots.remove(food);
+            if (slot == null) return false;
+            if (food instanceof CompositeFood) {
+                compositeFoods.set(slot, null);
+                compositeKeywords.remove(slot, food);
+                compositeCount--;
+            } else {
+                basicFoods.set(slot, null);
+                basicKeywords.remove(slot, food);
+                basicCount--;
+            }
+            if (foodIndex.get(food.getIdKey()) == food) foodIndex.set(food.getIdKey(), null);
+
+            typeahead.remove(idTerms.remove(food));
+            for (int key : distinctKeywords(food)) {
+                if (keywordCounts.merge(key, -1, Integer::sum) == 0) {
+                    keywordCounts.remove(key);
+                    typeahead.remove(keywordTerms.remove(key));
+                }
+            }
+            return true;
+        }
+
+        // Folded keyword ordinals of a food, without duplicates or blanks
+        private Set<Integer> distinctKeywords(Food food) {
+            Set<Integer> keys = new LinkedHashSet<>();
+            for (int key : food.getKeywordKeys()) {
+                if (!SymbolTable.KEYWORDS.name(key).isEmpty()) keys.add(key);
+            }
+            return keys;
+        }
+
+        Snapshot publish() {
+            // Once removed slots outnumber live ones, renumber that list so scans stay dense
+            if (basicFoods.size() - basicCount > Math.max(basicCount, 1024)) {
+                basicFoods = compact(basicFoods);
+                basicKeywords = reindex(basicFoods);
+            }
+            if (compositeFoods.size() - compositeCount > Math.max(compositeCount, 1024)) {
+                compositeFoods = compact(compositeFoods);
+                compositeKeywords = reindex(compositeFoods);
+            }
+            return new Snapshot(basicFoods.build(), compositeFoods.build(), basicCount, compositeCount,
+                    foodIndex.build(), basicKeywords.build(), compositeKeywords.build(), typeahead.build());
+        }
+
+        private PagedArray.Editor<Food> compact(PagedArray.Editor<Food> foods) {
+            PagedArray.Editor<Food> dense = PagedArray.<Food>empty().edit();
+            for (int slot = 0; slot < foods.size(); slot++) {
+                Food food = foods.get(slot);
+                if (food != null) slots.put(food, dense.add(food));
+            }
+            return dense;
+        }
+
+        private KeywordIndex.Editor reindex(PagedArray.Editor<Food> foods) {
+            KeywordIndex.Editor keywords = KeywordIndex.empty().edit();
+            for (int slot = 0; slot < foods.size(); slot++) {
+                keywords.add(slot, foods.get(slot));
+            }
+            return keywords;
+        }
+    }
 }
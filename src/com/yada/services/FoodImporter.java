@@ -1,5 +1,8 @@
 package com.yada.services;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 import java.util.Set;
 
 // Interface for the External Source Food Importer
@@ -9,4 +12,32 @@ public interface FoodImporter {
     Set<String> KEYWORDS_HEADERS = Set.of("keywords", "tags", "descriptors");
 
     void importFoods(String filePath, FoodDatabase db);
+
+    // Non-interactive import: no prompts and no console output.
+    // A null mapping is auto-detected from the alias sets above.
+    ImportResult importFoods(String filePath, FoodDatabase db, ImportMapping mapping);
+
+    // Picks an importer from the file extension; null if unsupported
+    static FoodImporter forFile(String filePath) {
+        String name = filePath.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".csv")) return new FoodCSVImporter();
+        if (name.endsWith(".json")) return new FoodJSONImporter();
+        return null;
+    }
+
+    // Imports many files unattended with one mapping (or auto-detection when null)
+    static List<ImportResult> importAll(List<String> filePaths, FoodDatabase db, ImportMapping mapping) {
+        List<ImportResult> results = new ArrayList<>();
+        for (String filePath : filePaths) {
+            FoodImporter importer = forFile(filePath);
+            if (importer == null) {
+                ImportResult result = new ImportResult(filePath);
+                result.setError("unsupported file type");
+                results.add(result);
+                continue;
+            }
+            results.add(importer.importFoods(filePath, db, mapping));
+        }
+        return results;
+    }
 }
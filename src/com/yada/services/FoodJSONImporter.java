@@ -1,85 +1,141 @@
 package com.yada.services;
 
 import com.yada.models.Food;
+import com.yada.utils.Validator;
+import java.io.BufferedReader;
 import java.io.FileReader;
+import java.io.Reader;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 import java.io.IOException;
 
-import org.json.simple.*;
 import org.json.simple.parser.*;
 
 public class FoodJSONImporter implements FoodImporter{
+    // Records committed to the database per batch
+    private static final int COMMIT_BATCH = 4096;
+
 //    private static final Set<String> ID_HEADERS = Set.of("id", "name", "foodname", "food_name", "title");
 //    private static final Set<String> CAL_HEADERS = Set.of("cal", "calories", "energy", "kcal", "calorie");
 //    private static final Set<String> KEYWORDS_HEADERS = Set.of("keywords", "tags", "descriptors");
 
+    // Streams the top-level array one element at a time: the parser pauses after each
+    // object, so memory stays bounded by the largest single record rather than the file.
     public void importFoods(String filePath, FoodDatabase db) {
-        JSONParser parser = new JSONParser();
-        try (FileReader reader = new FileReader(filePath)) {
-            Object obj = parser.parse(reader);
-            if (!(obj instanceof JSONArray)) {
-                System.err.println("JSON must be an array of food objects.");
-                return;
-            }
+        run(filePath, db, null, false);
+    }
 
-            JSONArray array = (JSONArray) obj;
+    // Unattended import; the mapping (or the alias sets when null) is resolved against the
+    // leaf paths of the first record
+    @Override
+    public ImportResult importFoods(String filePath, FoodDatabase db, ImportMapping mapping) {
+        return run(filePath, db, mapping, true);
+    }
 
-            if (array.isEmpty()) {
-                System.out.println("No data in JSON.");
-                return;
+    private ImportResult run(String filePath, FoodDatabase db, ImportMapping mapping, boolean headless) {
+        ImportResult result = new ImportResult(filePath);
+        JSONParser parser = new JSONParser();
+        StreamingHandler handler = new StreamingHandler();
+        try (Reader reader = new BufferedReader(new FileReader(filePath))) {
+            parser.parse(reader, handler, false);
+            if (handler.invalidRoot) {
+                result.setError("JSON must be an array of food objects.");
+                if (!headless) System.err.println(result.getError());
+                return result;
+            }
+            if (!handler.recordReady) {
+                if (!headless) System.out.println("No data in JSON.");
+                return result;
             }
 
-            // Flatten keys for the first object
-            JSONObject first = (JSONObject) array.get(0);
-            Map<String, String> flattened = flatten(first, "");
-
-            List<String> keys = new ArrayList<>(flattened.keySet());
-            Map<String, String> keyMapping = askUserForKeyMapping(keys);
-
-            String idKey = keyMapping.get("id");
-            String calKey = keyMapping.get("calories");
-            String kwKey = keyMapping.get("keywords");
-
-            for (Object o : array) {
-                if (!(o instanceof JSONObject)) continue;
-                JSONObject foodObj = (JSONObject) o;
-                Map<String, String> flat = flatten(foodObj, "");
-
-                String id = flat.getOrDefault(idKey, "").trim();
-                if (id.isEmpty()) {
-                    System.out.println("Skipping entry with empty ID: " + foodObj);
-                    continue;
+            // All leaf paths of the first object are offered for mapping
+            Map<String, String> first = handler.takeRecord();
+            List<String> keys = new ArrayList<>(first.keySet());
+            String idKey;
+            String calKey;
+            String kwKey;
+            if (headless) {
+                ImportMapping resolved = mapping == null ? ImportMapping.autoDetect(keys) : mapping.toKeyPaths(keys);
+                if (resolved == null) {
+                    result.setError("no key matches the id/calories mapping");
+                    return result;
                 }
+                idKey = resolved.getIdField();
+                calKey = resolved.getCaloriesField();
+                kwKey = resolved.getKeywordsField();
+            } else {
+                Map<String, String> keyMapping = askUserForKeyMapping(keys);
+                idKey = keyMapping.get("id");
+                calKey = keyMapping.get("calories");
+                kwKey = keyMapping.get("keywords");
+            }
+            // From here on only the mapped paths are kept for each record
+            handler.keepOnly(idKey, calKey, kwKey);
 
-                Food results = db.findFoodById(id);
-                if(results != null){
-                    System.out.println("Skipping entry with duplicate ID: " + id);
-                    continue;
+            // Foods are committed in batches; ids in the pending batch count as duplicates too
+            List<Food> batch = new ArrayList<>();
+            Set<String> batchIds = new HashSet<>();
+            importRecord(first, idKey, calKey, kwKey, db, batch, batchIds, result, headless);
+            while (!handler.finished) {
+                parser.parse(reader, handler, true);
+                if (handler.recordReady) {
+                    importRecord(handler.takeRecord(), idKey, calKey, kwKey, db, batch, batchIds, result, headless);
                 }
-
-                int calories = extractCalories(flat.get(calKey));
-
-                List<String> keywords = new ArrayList<>();
-                if (kwKey != null && flat.containsKey(kwKey)) {
-                    String raw = flat.get(kwKey);
-                    if (raw != null && !raw.isBlank()) {
-                        keywords = Arrays.stream(raw.split("[|;/,]"))
-                                .map(String::trim)
-                                .filter(s -> !s.isEmpty())
-                                .toList();
-                    }
+                if (batch.size() >= COMMIT_BATCH) {
+                    db.addBasicFoods(batch);
+                    batch.clear();
+                    batchIds.clear();
                 }
-
-                db.addBasicFood(new Food(id, keywords, calories));
             }
+            db.addBasicFoods(batch);
 
-            System.out.println("JSON import complete.");
+            if (!headless) System.out.println("JSON import complete.");
 
         } catch (IOException | ParseException e) {
-            System.err.println("Failed to parse JSON: " + e.getMessage());
+            result.setError("Failed to parse JSON: " + e.getMessage());
+            if (!headless) System.err.println(result.getError());
         }
+        return result;
+    }
+
+    private static void importRecord(Map<String, String> flat, String idKey, String calKey, String kwKey,
+                                     FoodDatabase db, List<Food> batch, Set<String> batchIds,
+                                     ImportResult result, boolean quiet) {
+        String id = flat.getOrDefault(idKey, "").trim();
+        if (id.isEmpty()) {
+            if (!quiet) System.out.println("Skipping entry with empty ID: " + flat);
+            result.addSkipped(1);
+            return;
+        }
+
+        List<String> keywords = new ArrayList<>();
+        if (kwKey != null && flat.containsKey(kwKey)) {
+            String raw = flat.get(kwKey);
+            if (raw != null && !raw.isBlank()) {
+                keywords = Arrays.stream(raw.split("[|;/,]"))
+                        .map(String::trim)
+                        .filter(s -> !s.isEmpty())
+                        .toList();
+            }
+        }
+
+        // JSON strings may hold ';', ',' or ':', which would break the foods file format, so ids
+        // and keywords follow the same rules as foods added by hand (keywords stay optional)
+        if (!Validator.isValidId(id) || (!keywords.isEmpty() && !Validator.isValidKeywordList(keywords))) {
+            if (!quiet) System.out.println("Skipping entry with invalid ID or keywords: " + id);
+            result.addSkipped(1);
+            return;
+        }
+
+        if(db.containsFood(id) || !batchIds.add(FoodDatabase.normalizeId(id))){
+            if (!quiet) System.out.println("Skipping entry with duplicate ID: " + id);
+            result.addSkipped(1);
+            return;
+        }
+
+        int calories = extractCalories(flat.getOrDefault(calKey, ""), quiet);
+
+        batch.add(new Food(id, keywords, calories));
+        result.addImported(1);
     }
 
     private static Map<String, String> askUserForKeyMapping(List<String> keys) {
@@ -133,27 +189,154 @@ public class FoodJSONImporter implements FoodImporter{
         }
     }
 
-    private static Map<String, String> flatten(JSONObject obj, String prefix) {
-        Map<String, String> flat = new HashMap<>();
-        for (Object keyObj : obj.keySet()) {
-            String key = (String) keyObj;
-            Object val = obj.get(key);
+    // SAX-style handler for json-simple. It tracks the dotted path of the current value inside
+    // each element of the top-level array and records leaf values under that path (arrays of
+    // primitives are joined with commas). Once keepOnly is called, paths that cannot lead to a
+    // mapped key are not even built. Returning false from endObject pauses the parser.
+    private static class StreamingHandler implements ContentHandler {
+        private Set<String> wanted;          // null: keep every path (first record)
+        private Set<String> wantedPrefixes;
+        private final List<String> paths = new ArrayList<>(); // null entries mark skipped paths
+        private Map<String, String> record;
+        private int depth;
+        private boolean topLevelArray;
+        private boolean inRecord;
+        private int arrayNesting;
+        private String arrayPath;
+        private List<String> arrayValues;
 
-            if (val instanceof JSONObject) {
-                flat.putAll(flatten((JSONObject) val, prefix + key + "."));
-            } else {
-                flat.put(prefix + key, val == null ? "" : val.toString());
+        boolean invalidRoot;
+        boolean recordReady;
+        boolean finished;
+
+        void keepOnly(String... keys) {
+            wanted = new HashSet<>();
+            wantedPrefixes = new HashSet<>();
+            for (String key : keys) {
+                if (key == null) continue;
+                wanted.add(key);
+                for (int dot = key.indexOf('.'); dot >= 0; dot = key.indexOf('.', dot + 1)) {
+                    wantedPrefixes.add(key.substring(0, dot));
+                }
+                wantedPrefixes.add(key);
+            }
+        }
+
+        Map<String, String> takeRecord() {
+            Map<String, String> taken = record;
+            record = null;
+            recordReady = false;
+            return taken;
+        }
+
+        @Override
+        public void startJSON() {
+            depth = 0;
+        }
+
+        @Override
+        public void endJSON() {
+            finished = true;
+        }
+
+        @Override
+        public boolean startObject() {
+            depth++;
+            if (depth == 1) {
+                invalidRoot = true;
+                finished = true;
+                return false;
+            }
+            if (depth == 2 && topLevelArray) {
+                inRecord = true;
+                record = wanted == null ? new LinkedHashMap<>() : new HashMap<>();
+                paths.clear();
+                paths.add("");
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObject() {
+            depth--;
+            if (depth == 1 && inRecord) {
+                inRecord = false;
+                recordReady = true;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) {
+            if (!inRecord || arrayNesting > 0) return true;
+            String parent = paths.get(paths.size() - 1);
+            String path = null;
+            if (parent != null) {
+                String candidate = parent.isEmpty() ? key : parent + "." + key;
+                if (wanted == null || wantedPrefixes.contains(candidate)) path = candidate;
+            }
+            paths.add(path);
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() {
+            if (inRecord && arrayNesting == 0) paths.remove(paths.size() - 1);
+            return true;
+        }
+
+        @Override
+        public boolean startArray() {
+            depth++;
+            if (depth == 1) {
+                topLevelArray = true;
+            } else if (inRecord && ++arrayNesting == 1) {
+                arrayPath = paths.get(paths.size() - 1);
+                arrayValues = new ArrayList<>();
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endArray() {
+            depth--;
+            if (inRecord && arrayNesting > 0 && --arrayNesting == 0) {
+                if (arrayPath != null && !arrayPath.isEmpty()) {
+                    record.put(arrayPath, String.join(",", arrayValues));
+                }
+                arrayValues = null;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) {
+            if (depth == 0) {
+                invalidRoot = true;
+                finished = true;
+                return false;
+            }
+            if (!inRecord) return true;
+            String text = value == null ? "" : value.toString();
+            if (arrayNesting > 0) {
+                if (arrayPath != null) arrayValues.add(text);
+                return true;
+            }
+            String path = paths.get(paths.size() - 1);
+            if (path != null && (wanted == null || wanted.contains(path))) {
+                record.put(path, text);
             }
+            return true;
         }
-        return flat;
     }
 
-    private static int extractCalories(String rawCal) {
+    private static int extractCalories(String rawCal, boolean quiet) {
         rawCal = rawCal.toLowerCase().replaceAll("[^0-9.]", "");
         try {
             return (int) Math.round(Double.parseDouble(rawCal));
         } catch (NumberFormatException e) {
-            System.err.println("Failed to parse calories from: " + rawCal + ", defaulting to 0");
+            if (!quiet) System.err.println("Failed to parse calories from: " + rawCal + ", defaulting to 0");
             return 0;
         }
     }
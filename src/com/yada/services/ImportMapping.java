@@ -0,0 +1,91 @@
+package com.yada.services;
+
+import java.util.*;
+
+// Which source field holds the id, calories and (optionally) keywords of a food.
+// Fields are CSV header names or dotted JSON key paths, matched case-insensitively.
+public class ImportMapping {
+    private final String idField;
+    private final String caloriesField;
+    private final String keywordsField;
+
+    public ImportMapping(String idField, String caloriesField, String keywordsField) {
+        this.idField = idField;
+        this.caloriesField = caloriesField;
+        this.keywordsField = keywordsField == null || keywordsField.isBlank() ? null : keywordsField;
+    }
+
+    public String getIdField() {
+        return idField;
+    }
+
+    public String getCaloriesField() {
+        return caloriesField;
+    }
+
+    public String getKeywordsField() {
+        return keywordsField;
+    }
+
+    // Builds a mapping from the alias sets on FoodImporter; null if no id or calories field matches
+    public static ImportMapping autoDetect(List<String> fieldNames) {
+        String id = detect(fieldNames, FoodImporter.ID_HEADERS);
+        String calories = detect(fieldNames, FoodImporter.CAL_HEADERS);
+        if (id == null || calories == null) return null;
+        return new ImportMapping(id, calories, detect(fieldNames, FoodImporter.KEYWORDS_HEADERS));
+    }
+
+    // Exact matches (whole name or last path segment) win over names that merely contain an alias
+    private static String detect(List<String> fieldNames, Set<String> aliases) {
+        for (String field : fieldNames) {
+            String name = field.trim().toLowerCase(Locale.ROOT);
+            String last = name.substring(name.lastIndexOf('.') + 1);
+            if (aliases.contains(name) || aliases.contains(last)) return field;
+        }
+        for (String field : fieldNames) {
+            String name = field.trim().toLowerCase(Locale.ROOT);
+            for (String alias : aliases) {
+                if (name.contains(alias)) return field;
+            }
+        }
+        return null;
+    }
+
+    // Resolves the mapping against a CSV header row; keywords is -1 when unmapped.
+    // Returns null if the id or calories column is missing.
+    public Map<String, Integer> toColumnIndexes(String[] headers) {
+        Map<String, Integer> indexes = new HashMap<>();
+        indexes.put("id", indexOf(headers, idField));
+        indexes.put("calories", indexOf(headers, caloriesField));
+        indexes.put("keywords", keywordsField == null ? -1 : indexOf(headers, keywordsField));
+        if (indexes.get("id") == -1 || indexes.get("calories") == -1) return null;
+        return indexes;
+    }
+
+    private static int indexOf(String[] headers, String field) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].trim().equalsIgnoreCase(field.trim())) return i;
+        }
+        return -1;
+    }
+
+    // Resolves the mapping against the leaf paths of a JSON record
+    public ImportMapping toKeyPaths(Collection<String> keys) {
+        String id = findKey(keys, idField);
+        String calories = findKey(keys, caloriesField);
+        if (id == null || calories == null) return null;
+        return new ImportMapping(id, calories, keywordsField == null ? null : findKey(keys, keywordsField));
+    }
+
+    private static String findKey(Collection<String> keys, String field) {
+        for (String key : keys) {
+            if (key.equalsIgnoreCase(field.trim())) return key;
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "id=" + idField + ", calories=" + caloriesField + ", keywords=" + (keywordsField == null ? "-" : keywordsField);
+    }
+}
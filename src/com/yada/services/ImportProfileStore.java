@@ -0,0 +1,59 @@
+package com.yada.services;
+
+import java.io.*;
+import java.util.*;
+
+// Named column/key mappings saved for unattended imports.
+// Each line: name;idField;caloriesField;keywordsField (keywords may be empty)
+public class ImportProfileStore {
+    private final Map<String, ImportMapping> profiles = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final String profileFile;
+
+    public ImportProfileStore() {
+        this("data/import_profiles.txt");
+    }
+
+    public ImportProfileStore(String profileFile) {
+        this.profileFile = profileFile;
+    }
+
+    public void loadProfiles() {
+        File file = new File(profileFile);
+        if (!file.exists()) return;
+        try (Scanner scanner = new Scanner(file)) {
+            while (scanner.hasNextLine()) {
+                String line = scanner.nextLine().trim();
+                if (line.isEmpty()) continue;
+                String[] parts = line.split(";", -1);
+                if (parts.length < 3) continue;
+                profiles.put(parts[0], new ImportMapping(parts[1], parts[2], parts.length > 3 ? parts[3] : null));
+            }
+        } catch (Exception e) {
+            System.out.println("Error loading import profiles: " + e.getMessage());
+        }
+    }
+
+    public void saveProfiles() {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(profileFile))) {
+            for (Map.Entry<String, ImportMapping> entry : profiles.entrySet()) {
+                ImportMapping mapping = entry.getValue();
+                writer.println(entry.getKey() + ";" + mapping.getIdField() + ";" + mapping.getCaloriesField() + ";"
+                        + (mapping.getKeywordsField() == null ? "" : mapping.getKeywordsField()));
+            }
+        } catch (Exception e) {
+            System.out.println("Error saving import profiles: " + e.getMessage());
+        }
+    }
+
+    public ImportMapping getProfile(String name) {
+        return profiles.get(name);
+    }
+
+    public void putProfile(String name, ImportMapping mapping) {
+        profiles.put(name, mapping);
+    }
+
+    public Set<String> getProfileNames() {
+        return Collections.unmodifiableSet(profiles.keySet());
+    }
+}
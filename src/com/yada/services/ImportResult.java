@@ -0,0 +1,51 @@
+package com.yada.services;
+
+// Outcome of one non-interactive import, reported instead of printing per row
+public class ImportResult {
+    private final String filePath;
+    private long imported;
+    private long skipped;
+    private String error;
+
+    public ImportResult(String filePath) {
+        this.filePath = filePath;
+    }
+
+    public String getFilePath() {
+        return filePath;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    void addImported(long count) {
+        imported += count;
+    }
+
+    void addSkipped(long count) {
+        skipped += count;
+    }
+
+    void setError(String error) {
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        if (error != null) return filePath + ": failed (" + error + ")";
+        return filePath + ": " + imported + " imported, " + skipped + " skipped";
+    }
+}
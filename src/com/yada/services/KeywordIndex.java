@@ -0,0 +1,181 @@
+package com.yada.services;
+
+import com.yada.models.Food;
+import com.yada.models.SymbolTable;
+
+import java.util.*;
+
+// Inverted index from folded keyword ordinal to the slots of the foods tagged with it, where
+// a slot is the food's insertion position in its FoodDatabase list. Each posting list is a
+// sorted int array, so match-all is a sorted intersection (smallest list first) and match-any
+// a union, both in insertion order.
+//
+// Instances are immutable and safe to share between threads. An Editor builds the next
+// version, copying only the posting lists it touches.
+public final class KeywordIndex {
+    private static final KeywordIndex EMPTY = new KeywordIndex(PagedArray.empty());
+
+    private final PagedArray<int[]> postings;
+
+    private KeywordIndex(PagedArray<int[]> postings) {
+        this.postings = postings;
+    }
+
+    public static KeywordIndex empty() {
+        return EMPTY;
+    }
+
+    // Slots of the foods carrying every keyword
+    public int[] matchAll(Collection<String> keywords) {
+        Set<Integer> terms = normalize(keywords);
+        List<int[]> lists = new ArrayList<>();
+        for (int term : terms) {
+            int[] list = postings.get(term);
+            if (list == null) return new int[0];
+            lists.add(list);
+        }
+        if (lists.isEmpty()) return new int[0];
+        lists.sort(Comparator.comparingInt(list -> list.length));
+
+        int[] result = lists.get(0);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = intersect(result, lists.get(i));
+        }
+        return result;
+    }
+
+    // Slots of the foods carrying at least one keyword
+    public int[] matchAny(Collection<String> keywords) {
+        int total = 0;
+        List<int[]> lists = new ArrayList<>();
+        for (int term : normalize(keywords)) {
+            int[] list = postings.get(term);
+            if (list == null) continue;
+            lists.add(list);
+            total += list.length;
+        }
+        int[] merged = new int[total];
+        int pos = 0;
+        for (int[] list : lists) {
+            System.arraycopy(list, 0, merged, pos, list.length);
+            pos += list.length;
+        }
+        Arrays.sort(merged);
+
+        int distinct = 0;
+        for (int i = 0; i < merged.length; i++) {
+            if (i == 0 || merged[i] != merged[i - 1]) merged[distinct++] = merged[i];
+        }
+        return Arrays.copyOf(merged, distinct);
+    }
+
+    // Slots of the foods carrying a keyword ordinal, sorted; null when there are none
+    public int[] postings(int term) {
+        return postings.get(term);
+    }
+
+    public Editor edit() {
+        return new Editor(postings.edit());
+    }
+
+    // Walks the smaller list and binary-searches forward in the larger one
+    private static int[] intersect(int[] small, int[] large) {
+        int[] result = new int[small.length];
+        int count = 0;
+        int from = 0;
+        for (int slot : small) {
+            int pos = Arrays.binarySearch(large, from, large.length, slot);
+            if (pos >= 0) {
+                result[count++] = slot;
+                from = pos + 1;
+            } else {
+                from = -pos - 1;
+            }
+            if (from >= large.length) break;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    // Distinct non-empty keyword ordinals of a food
+    private static Set<Integer> terms(Food food) {
+        Set<Integer> terms = new LinkedHashSet<>();
+        for (int key : food.getKeywordKeys()) {
+            if (!SymbolTable.KEYWORDS.name(key).isEmpty()) terms.add(key);
+        }
+        return terms;
+    }
+
+    // Ordinals of the query keywords; a keyword no food was ever tagged with maps to -1,
+    // which has no postings
+    static Set<Integer> normalize(Collection<String> keywords) {
+        Set<Integer> terms = new LinkedHashSet<>();
+        for (String keyword : keywords) {
+            if (keyword == null || normalize(keyword).isEmpty()) continue;
+            terms.add(SymbolTable.KEYWORDS.findFolded(keyword));
+        }
+        return terms;
+    }
+
+    public static String normalize(String keyword) {
+        return SymbolTable.KEYWORDS.fold(keyword);
+    }
+
+    // Working copy of one version. Touched posting lists are copied once into growable
+    // arrays and written back by build(). Not thread-safe.
+    public static final class Editor {
+        private final PagedArray.Editor<int[]> postings;
+        private final Map<Integer, int[]> touched = new HashMap<>();
+        private final Map<Integer, Integer> lengths = new HashMap<>();
+
+        private Editor(PagedArray.Editor<int[]> postings) {
+            this.postings = postings;
+        }
+
+        // Slots must be added in increasing order, which keeps every list sorted by appending
+        public void add(int slot, Food food) {
+            for (int term : terms(food)) {
+                int[] list = open(term);
+                int length = lengths.get(term);
+                if (length == list.length) {
+                    list = Arrays.copyOf(list, Math.max(length * 2, 4));
+                    touched.put(term, list);
+                }
+                list[length] = slot;
+                lengths.put(term, length + 1);
+            }
+        }
+
+        public void remove(int slot, Food food) {
+            for (int term : terms(food)) {
+                if (postings.get(term) == null && !touched.containsKey(term)) continue;
+                int[] list = open(term);
+                int length = lengths.get(term);
+                int pos = Arrays.binarySearch(list, 0, length, slot);
+                if (pos < 0) continue;
+                System.arraycopy(list, pos + 1, list, pos, length - pos - 1);
+                lengths.put(term, length - 1);
+            }
+        }
+
+        // The edited version; the editor must not be used afterwards
+        public KeywordIndex build() {
+            for (Map.Entry<Integer, int[]> entry : touched.entrySet()) {
+                int length = lengths.get(entry.getKey());
+                postings.set(entry.getKey(), length == 0 ? null : Arrays.copyOf(entry.getValue(), length));
+            }
+            return new KeywordIndex(postings.build());
+        }
+
+        // Private copy of a posting list, made on first touch
+        private int[] open(int term) {
+            int[] list = touched.get(term);
+            if (list == null) {
+                int[] shared = postings.get(term);
+                list = shared == null ? new int[4] : Arrays.copyOf(shared, shared.length + 4);
+                touched.put(term, list);
+                lengths.put(term, shared == null ? 0 : shared.length);
+            }
+            return list;
+        }
+    }
+}
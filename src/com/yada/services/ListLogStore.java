@@ -0,0 +1,66 @@
+package com.yada.services;
+
+import com.yada.models.LogEntry;
+
+import java.util.*;
+
+// Default store: one list of LogEntry objects per day, in a map sorted by day
+public class ListLogStore implements LogStore {
+    private final NavigableMap<Integer, List<LogEntry>> days = new TreeMap<>();
+    private int size;
+
+    @Override
+    public void add(int day, LogEntry entry) {
+        days.computeIfAbsent(day, k -> new ArrayList<>()).add(entry);
+        size++;
+    }
+
+    @Override
+    public LogEntry remove(int day, int index) {
+        List<LogEntry> entries = days.get(day);
+        if (entries == null || index < 0 || index >= entries.size()) return null;
+        LogEntry removed = entries.remove(index);
+        if (entries.isEmpty()) days.remove(day);
+        size--;
+        return removed;
+    }
+
+    @Override
+    public int indexOf(int day, int id) {
+        List<LogEntry> entries = days.get(day);
+        if (entries == null) return -1;
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).getId() == id) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public List<LogEntry> entriesOn(int day) {
+        List<LogEntry> entries = days.get(day);
+        return entries == null ? Collections.emptyList() : Collections.unmodifiableList(entries);
+    }
+
+    @Override
+    public void forEachDay(int fromDay, int toDay, DayVisitor visitor) {
+        if (fromDay > toDay) return;
+        for (Map.Entry<Integer, List<LogEntry>> day : days.subMap(fromDay, true, toDay, true).entrySet()) {
+            visitor.visit(day.getKey(), Collections.unmodifiableList(day.getValue()));
+        }
+    }
+
+    @Override
+    public void forEachRecord(int fromDay, int toDay, RecordVisitor visitor) {
+        if (fromDay > toDay) return;
+        for (Map.Entry<Integer, List<LogEntry>> day : days.subMap(fromDay, true, toDay, true).entrySet()) {
+            for (LogEntry entry : day.getValue()) {
+                visitor.visit(day.getKey(), entry.getFood(), entry.getServings());
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,303 @@
+package com.yada.services;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+// Append-only journal of log mutations, kept next to the log file as numbered generations
+// (log.txt.journal.1, .2, ...). Records are written as they happen and fsynced in groups:
+// after GROUP_SIZE records, or by a background task shortly after the last append.
+//
+// All journals share one background thread, and a generation file is only opened on its
+// first append and closed again once idle, so a process can hold many journals (one per
+// user) without a thread or file handle for each.
+//
+// A checkpoint writes the changed log segments from a frozen copy of their entries (see
+// SegmentStore). It first seals the current generation, so new records go to the next one.
+// Then it stages the segments and the next segment manifest, and appends a marker (length
+// and CRC32 of the staged manifest) to the sealed generation. Only after that does it make
+// the manifest current and delete the covered generations. On recovery, a marker that
+// matches the current manifest means that step happened, so those generations are dropped
+// instead of replayed.
+public class LogJournal {
+    private static final int GROUP_SIZE = 64;
+    private static final long SYNC_INTERVAL_MS = 100;
+    private static final long IDLE_CLOSE_MS = 30_000;
+    private static final String MARKER = "#";
+    private static final ScheduledExecutorService WORKER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "log-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path logFile;
+    private final String journalPrefix;
+    private boolean open;           // recovered and not yet closed
+    private FileChannel channel;    // current generation, null until needed or while idle
+    private long generation;
+    private long size;
+    private int unsynced;
+    private boolean syncScheduled;
+    private boolean idleCheckScheduled;
+    private long lastAppend;
+    // Replayed or appended records not yet covered by a checkpoint
+    private boolean pending;
+    // Last checkpoint handed to the worker; close waits for it
+    private Future<?> lastCheckpoint;
+
+    public LogJournal(String logFile) {
+        this.logFile = Paths.get(logFile);
+        this.journalPrefix = this.logFile.getFileName() + ".journal.";
+    }
+
+    // Feeds every record not yet covered by base, the file the log was loaded from (the
+    // segment manifest or a legacy log file), to apply (split on ';'), oldest first, then
+    // opens a new generation for appends. Returns the bytes replayed.
+    public synchronized long recover(Path base, Consumer<String[]> apply) throws IOException {
+        List<Long> generations = listGenerations();
+        long covered = 0;
+        long replayed = 0;
+        if (!generations.isEmpty()) {
+            long[] fingerprint = fingerprint(base);
+            for (long gen : generations) {
+                String marker = lastMarker(journalFile(gen));
+                if (marker != null && marker.equals(markerFor(fingerprint))) covered = gen;
+            }
+        }
+        for (long gen : generations) {
+            Path file = journalFile(gen);
+            if (gen <= covered) {
+                Files.deleteIfExists(file);
+                continue;
+            }
+            replayed += Files.size(file);
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isEmpty() || line.startsWith(MARKER)) continue;
+                    apply.accept(line.split(";"));
+                }
+            }
+        }
+        generation = generations.isEmpty() ? 0 : generations.get(generations.size() - 1);
+        openNextGeneration();
+        open = true;
+        pending = replayed > 0;
+        return replayed;
+    }
+
+    public synchronized void append(String record) {
+        if (!open) return;
+        try {
+            if (channel == null) openChannel();
+            byte[] bytes = (record + "\n").getBytes(StandardCharsets.UTF_8);
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) channel.write(buffer);
+            size += bytes.length;
+            pending = true;
+            lastAppend = System.currentTimeMillis();
+            if (++unsynced >= GROUP_SIZE) {
+                sync();
+            } else if (!syncScheduled) {
+                syncScheduled = true;
+                WORKER.schedule(this::scheduledSync, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing log journal: " + e.getMessage());
+        }
+    }
+
+    // Forces pending records to disk
+    public synchronized void sync() throws IOException {
+        if (channel != null && unsynced > 0) {
+            channel.force(false);
+            unsynced = 0;
+        }
+    }
+
+    // Bytes appended to the current generation
+    public synchronized long size() {
+        return size;
+    }
+
+    // Whether any records are not yet covered by a checkpoint of the log file
+    public synchronized boolean hasPending() {
+        return pending;
+    }
+
+    // Seals the current generation and starts the next one; returns the sealed generation.
+    // The caller must freeze the log contents in the same critical section.
+    public synchronized long rotate() throws IOException {
+        long sealed = generation;
+        openNextGeneration();
+        pending = false;
+        return sealed;
+    }
+
+    // Applies update on the journal's background thread, then drops the generations up to and
+    // including sealed. onFailure runs if the update could not be made current.
+    public synchronized Future<?> checkpoint(long sealed, SegmentStore.Update update, Runnable onFailure) {
+        lastCheckpoint = WORKER.submit(() -> {
+            try {
+                writeCheckpoint(sealed, update);
+            } catch (IOException e) {
+                System.out.println("Error compacting log journal: " + e.getMessage());
+                onFailure.run();
+            }
+        });
+        return lastCheckpoint;
+    }
+
+    // Waits for pending checkpoints, then syncs and closes the current generation
+    public void close() {
+        Future<?> checkpoint;
+        synchronized (this) {
+            checkpoint = lastCheckpoint;
+        }
+        // The worker runs tasks in order, so the last checkpoint finishing covers earlier ones
+        if (checkpoint != null) {
+            try {
+                checkpoint.get(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                System.out.println("Error closing log journal: " + e.getMessage());
+            }
+        }
+        synchronized (this) {
+            open = false;
+            closeChannel();
+        }
+    }
+
+    private void writeCheckpoint(long sealed, SegmentStore.Update update) throws IOException {
+        Path staged = update.stage();
+
+        // The sealed generation may never have been opened; it is created to hold the marker so
+        // that older generations are not replayed over the new log if the cleanup below is cut short
+        Path sealedFile = journalFile(sealed);
+        if (sealed > 0) {
+            try (FileChannel marker = FileChannel.open(sealedFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                marker.write(ByteBuffer.wrap((markerFor(fingerprint(staged)) + "\n").getBytes(StandardCharsets.UTF_8)));
+                marker.force(false);
+            }
+        }
+        update.commit();
+        for (long gen : listGenerations()) {
+            if (gen <= sealed) Files.deleteIfExists(journalFile(gen));
+        }
+    }
+
+    // Moves appends to the next generation; its file is created by the first append
+    private void openNextGeneration() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+        generation++;
+        size = 0;
+        unsynced = 0;
+    }
+
+    private void openChannel() throws IOException {
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        channel = FileChannel.open(journalFile(generation), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+        if (!idleCheckScheduled) {
+            idleCheckScheduled = true;
+            WORKER.schedule(this::closeIfIdle, IDLE_CLOSE_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Syncs and releases the file handle; the generation is reopened on the next append
+    private void closeChannel() {
+        if (channel == null) return;
+        try {
+            sync();
+            channel.close();
+            // Do not leave an empty generation behind for the next start
+            if (size == 0) Files.deleteIfExists(journalFile(generation));
+        } catch (IOException e) {
+            System.out.println("Error closing log journal: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private synchronized void scheduledSync() {
+        syncScheduled = false;
+        try {
+            sync();
+        } catch (IOException e) {
+            System.out.println("Error syncing log journal: " + e.getMessage());
+        }
+    }
+
+    private synchronized void closeIfIdle() {
+        long idle = System.currentTimeMillis() - lastAppend;
+        if (channel == null || idle >= IDLE_CLOSE_MS) {
+            idleCheckScheduled = false;
+            closeChannel();
+        } else {
+            WORKER.schedule(this::closeIfIdle, IDLE_CLOSE_MS - idle, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Path journalFile(long gen) {
+        return logFile.resolveSibling(journalPrefix + gen);
+    }
+
+    private List<Long> listGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        Path dir = logFile.toAbsolutePath().getParent();
+        if (dir == null || !Files.isDirectory(dir)) return generations;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, journalPrefix + "*")) {
+            for (Path file : files) {
+                try {
+                    generations.add(Long.parseLong(file.getFileName().toString().substring(journalPrefix.length())));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+        Collections.sort(generations);
+        return generations;
+    }
+
+    private static String lastMarker(Path file) throws IOException {
+        String marker = null;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(MARKER)) marker = line;
+            }
+        }
+        return marker;
+    }
+
+    private static String markerFor(long[] fingerprint) {
+        return MARKER + ";" + fingerprint[0] + ";" + fingerprint[1];
+    }
+
+    // Length and CRC32 of a file; a missing file has length -1
+    private static long[] fingerprint(Path file) throws IOException {
+        if (!Files.exists(file)) return new long[]{-1, 0};
+        CRC32 crc = new CRC32();
+        long length = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, read);
+                length += read;
+            }
+        }
+        return new long[]{length, crc.getValue()};
+    }
+}
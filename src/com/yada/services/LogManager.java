@@ -1,75 +1,513 @@
 package com.yada.services;
 
+import com.yada.models.CalorieListener;
 import com.yada.models.LogEntry;
 import com.yada.models.Food;
+import com.yada.utils.Validator;
 
 import java.io.*;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
 
 public class LogManager {
-    // Using a simple map of date (String in format YYYY-MM-DD) to list of log entries
-    private Map<String, List<LogEntry>> logs;
-    private final String logFile = "data/log.txt";
+    // Entries grouped by epoch day, in date order so ranges only touch the days they span
+    private final LogStore logs;
+    // Running calorie totals per epoch day, for range sums without walking the buckets
+    private final CalorieIndex calorieIndex = new CalorieIndex();
+    // Reverse index from each logged food to the days it appears on, so a calorie edit only
+    // adjusts those days
+    private final Map<Food, FoodUsage> foodUsage = new IdentityHashMap<>();
+    private final CalorieListener calorieListener = this::onCaloriesChanged;
+    private final String logFile;
+    // Entries on disk, one segment per month
+    private final SegmentStore store;
+    // Months changed since their segment was last written. Concurrent so that a failed
+    // background write can put its months back without taking the lock.
+    private final Set<YearMonth> dirtyMonths = ConcurrentHashMap.newKeySet();
+    private volatile IntConsumer changeListener;
+    // Id for the next stored entry; ids live only in memory, entries loaded from disk get new ones
+    private int nextEntryId = 1;
+    // Journal of changes since the segments were last written; null until replayJournal opens it
+    private LogJournal journal;
+    // Food id ordinals already defined (by an S record) in the current journal generation
+    private final BitSet journaledSymbols = new BitSet();
+    // Ordinal -> food id, as defined by the S records seen so far during replay
+    private Map<Integer, String> replaySymbols;
+    // Journal size that triggers a background write of the changed months
+    private static final long COMPACT_THRESHOLD = 1 << 20;
+    // Epoch days of the first and last loggable dates
+    private static final int FIRST_DAY = (int) LocalDate.of(Validator.MIN_YEAR, 1, 1).toEpochDay();
+    private static final int LAST_DAY = (int) LocalDate.of(Validator.MAX_YEAR, 12, 31).toEpochDay();
 
     public LogManager() {
-        logs = new HashMap<>();
+        this(new ListLogStore());
     }
 
-    // Load logs from a text file.
+    public LogManager(LogStore logs) {
+        this(logs, "data/log.txt");
+    }
+
+    // Entries are saved in a log/ directory next to logFile, which is only read until the
+    // first save; the journal stays next to logFile
+    public LogManager(LogStore logs, String logFile) {
+        this.logs = logs;
+        this.logFile = logFile;
+        this.store = new SegmentStore(SegmentStore.dirFor(logFile), Paths.get(logFile));
+    }
+
+    public String getLogFile() {
+        return logFile;
+    }
+
+    // The file that changes on every save, e.g. to tell whether a cache of the log is stale
+    public String getStorageFile() {
+        return store.currentFile().toString();
+    }
+
+    // Whether anything was saved before, in month segments or the legacy log.txt
+    public boolean hasSavedLogs() {
+        return store.exists();
+    }
+
+    // Load logs from the month segments (or the legacy log.txt).
     // Each line: date;foodId;servings
     public void loadLogs(FoodDatabase foodDatabase) {
-        File file = new File(logFile);
-        if (!file.exists()) {
+        if (!store.exists()) {
             System.out.println("Log file not found, starting with empty logs.");
             return;
         }
-        try (Scanner scanner = new Scanner(file)) {
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) continue;
+        try {
+            store.read(line -> {
                 String[] parts = line.split(";");
                 String date = parts[0];
                 String foodId = parts[1];
                 int servings = Integer.parseInt(parts[2]);
+                int day;
+                try {
+                    day = toEpochDay(date);
+                } catch (DateTimeParseException | IllegalArgumentException e) {
+                    System.out.println("Skipping log line with invalid date: " + line);
+                    return;
+                }
                 // Find the food by id (search in both basic and composite)
-                Food food = foodDatabase.getAllFoods().stream()
-                        .filter(f -> f.getId().equalsIgnoreCase(foodId))
-                        .findFirst().orElse(null);
+                Food food = foodDatabase.findFoodById(foodId);
                 if (food != null) {
-                    LogEntry entry = new LogEntry(food, servings);
-                    logs.computeIfAbsent(date, k -> new ArrayList<>()).add(entry);
+                    insert(day, new LogEntry(food, servings));
                 }
-            }
+            });
         } catch (Exception e) {
             System.out.println("Error loading logs: " + e.getMessage());
         }
     }
 
-    // Save logs to file
-    public void saveLogs() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(logFile))) {
-            for (String date : logs.keySet()) {
-                for (LogEntry entry : logs.get(date)) {
-                    writer.println(date + ";" + entry.getFood().getId() + ";" + entry.getServings());
+    // Adds an entry read from disk, which the next save need not write back
+    void addSavedEntry(LocalDate date, LogEntry entry) {
+        insert(toEpochDay(date), entry);
+    }
+
+    // Re-applies the journaled changes made since the segments were last written, then starts
+    // journaling new ones. Call after loadLogs (or a snapshot load).
+    public void replayJournal(FoodDatabase foodDatabase) {
+        journal = new LogJournal(logFile);
+        replaySymbols = new HashMap<>();
+        try {
+            long replayed = journal.recover(store.currentFile(), record -> applyJournalRecord(record, foodDatabase));
+            replaySymbols = null;
+            journaledSymbols.clear();
+            if (replayed >= COMPACT_THRESHOLD) {
+                compactInBackground();
+            }
+        } catch (IOException e) {
+            System.out.println("Error replaying log journal: " + e.getMessage());
+        }
+    }
+
+    // Journal records: S;ordinal;foodId defines a food ordinal for the records after it in the
+    // same generation, a;epochDay;ordinal;servings adds and d;epochDay;index deletes.
+    // Journals written before ordinals used +;date;foodId;servings and -;date;index.
+    // Replayed changes are not in the segments yet, so their months count as changed.
+    private void applyJournalRecord(String[] record, FoodDatabase foodDatabase) {
+        try {
+            if (record[0].equals("S")) {
+                replaySymbols.put(Integer.parseInt(record[1]), record[2]);
+            } else if (record[0].equals("a")) {
+                Food food = foodDatabase.findFoodById(replaySymbols.get(Integer.parseInt(record[2])));
+                if (food != null) {
+                    insert(Integer.parseInt(record[1]), new LogEntry(food, Integer.parseInt(record[3])));
+                    markDirty(Integer.parseInt(record[1]));
+                }
+            } else if (record[0].equals("d")) {
+                if (removeEntry(Integer.parseInt(record[1]), Integer.parseInt(record[2])) != null) {
+                    markDirty(Integer.parseInt(record[1]));
+                }
+            } else if (record[0].equals("+")) {
+                Food food = foodDatabase.findFoodById(record[2]);
+                if (food != null) {
+                    insert(toEpochDay(record[1]), new LogEntry(food, Integer.parseInt(record[3])));
+                    markDirty(toEpochDay(record[1]));
+                }
+            } else if (record[0].equals("-")) {
+                if (removeEntry(toEpochDay(record[1]), Integer.parseInt(record[2])) != null) {
+                    markDirty(toEpochDay(record[1]));
                 }
             }
-        } catch (Exception e) {
+        } catch (RuntimeException e) {
+            System.out.println("Skipping bad journal record: " + String.join(";", record));
+        }
+    }
+
+    // Makes logged changes durable. With a journal that only means syncing it; the changed
+    // months are written in the background once the journal grows large.
+    public synchronized void saveLogs() {
+        if (journal == null) {
+            writeSegments();
+            return;
+        }
+        try {
+            journal.sync();
+        } catch (IOException e) {
             System.out.println("Error saving logs: " + e.getMessage());
         }
     }
 
-    public void addLogEntry(String date, LogEntry entry) {
-        logs.computeIfAbsent(date, k -> new ArrayList<>()).add(entry);
+    // Writes the changed months and clears the journal, waiting for the write to finish.
+    // Nothing is written when the journal holds no changes, unless the log still has to move
+    // out of log.txt. The months are captured under the lock, but the wait is not, so entries
+    // can be logged and calories read while the segments are written.
+    public void compactLogs() {
+        Future<?> written;
+        synchronized (this) {
+            if (journal == null) {
+                writeSegments();
+                return;
+            }
+            if (!journal.hasPending() && !store.usesLegacyFile()) return;
+            try {
+                written = checkpoint();
+            } catch (IOException e) {
+                System.out.println("Error saving logs: " + e.getMessage());
+                return;
+            }
+        }
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.out.println("Error saving logs: " + e.getCause().getMessage());
+        }
+    }
+
+    // Saves, then writes the whole log to file in the log.txt format
+    public void exportLogs(String file) {
+        compactLogs();
+        try {
+            store.exportTo(Paths.get(file));
+        } catch (IOException e) {
+            System.out.println("Error exporting logs: " + e.getMessage());
+        }
+    }
+
+    // Syncs and closes the journal, e.g. at exit, and stops listening to the logged foods,
+    // which belong to the shared catalog and would otherwise keep this manager reachable. A
+    // closed manager no longer follows calorie changes.
+    public synchronized void close() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        for (Food food : foodUsage.keySet()) {
+            food.removeCalorieListener(calorieListener);
+        }
+        foodUsage.clear();
+    }
+
+    private void maybeCompact() {
+        if (journal != null && journal.size() >= COMPACT_THRESHOLD) {
+            compactInBackground();
+        }
+    }
+
+    private void compactInBackground() {
+        try {
+            checkpoint();
+        } catch (IOException e) {
+            System.out.println("Error compacting logs: " + e.getMessage());
+        }
+    }
+
+    // Seals the journal generation and hands the changed months to the journal's background
+    // thread. Their lines are frozen together with the rotation; a write that fails puts the
+    // months back, so a later checkpoint writes them before it drops the journal.
+    private Future<?> checkpoint() throws IOException {
+        boolean complete = store.usesLegacyFile();
+        Set<YearMonth> months = takeDirtyMonths();
+        Map<String, List<String>> segments = monthLines(complete ? null : months);
+        long sealed = journal.rotate();
+        journaledSymbols.clear();
+        return journal.checkpoint(sealed, store.update(segments, complete), () -> dirtyMonths.addAll(months));
+    }
+
+    // Writes the changed months directly, for a log without a journal
+    private void writeSegments() {
+        boolean complete = store.usesLegacyFile();
+        Set<YearMonth> months = takeDirtyMonths();
+        if (months.isEmpty() && !complete) return;
+        try {
+            store.write(monthLines(complete ? null : months), complete);
+        } catch (IOException e) {
+            System.out.println("Error saving logs: " + e.getMessage());
+            dirtyMonths.addAll(months);
+        }
+    }
+
+    private void markDirty(int day) {
+        dirtyMonths.add(YearMonth.from(LocalDate.ofEpochDay(day)));
+    }
+
+    private Set<YearMonth> takeDirtyMonths() {
+        Set<YearMonth> months = new HashSet<>();
+        for (Iterator<YearMonth> it = dirtyMonths.iterator(); it.hasNext(); ) {
+            months.add(it.next());
+            it.remove();
+        }
+        return months;
+    }
+
+    // Lines of the given months (every month when months is null) by segment name, e.g.
+    // "2024-01"; a month with no entries left maps to an empty list
+    private Map<String, List<String>> monthLines(Set<YearMonth> months) {
+        Map<String, List<String>> segments = new HashMap<>();
+        LogStore.RecordVisitor visitor = new LogStore.RecordVisitor() {
+            private int lastDay;
+            private String lastDate;
+            private List<String> lines;
+
+            @Override
+            public void visit(int day, Food food, int servings) {
+                if (lastDate == null || day != lastDay) {
+                    LocalDate date = LocalDate.ofEpochDay(day);
+                    lastDay = day;
+                    lastDate = date.toString();
+                    lines = segments.computeIfAbsent(YearMonth.from(date).toString(), month -> new ArrayList<>());
+                }
+                lines.add(lastDate + ";" + food.getId() + ";" + servings);
+            }
+        };
+        if (months == null) {
+            logs.forEachRecord(Integer.MIN_VALUE, Integer.MAX_VALUE, visitor);
+            return segments;
+        }
+        for (YearMonth month : months) {
+            segments.putIfAbsent(month.toString(), new ArrayList<>());
+            logs.forEachRecord((int) month.atDay(1).toEpochDay(), (int) month.atEndOfMonth().toEpochDay(), visitor);
+        }
+        return segments;
+    }
+
+    public LogEntry addLogEntry(String date, LogEntry entry) {
+        return addLogEntry(LocalDate.parse(date), entry);
+    }
+
+    // Stores entry and returns it as stored, with its id. An entry that already has an id
+    // (one put back by undo) keeps it.
+    public synchronized LogEntry addLogEntry(LocalDate date, LogEntry entry) {
+        int day = toEpochDay(date);
+        entry = insert(day, entry);
+        markDirty(day);
+        changed(day);
+        if (journal != null) {
+            int ordinal = entry.getFood().getIdKey();
+            if (!journaledSymbols.get(ordinal)) {
+                journal.append("S;" + ordinal + ";" + entry.getFood().getId());
+                journaledSymbols.set(ordinal);
+            }
+            journal.append("a;" + day + ";" + ordinal + ";" + entry.getServings());
+            maybeCompact();
+        }
+        return entry;
     }
 
     public void deleteLogEntry(String date, int index) {
-        List<LogEntry> entries = logs.get(date);
-        if (entries != null && index >= 0 && index < entries.size()) {
-            entries.remove(index);
+        deleteAt(toEpochDay(date), index);
+    }
+
+    // Deletes the entry with this id from date; returns it, or null when it is not there
+    public synchronized LogEntry deleteLogEntryById(String date, int id) {
+        int day = toEpochDay(date);
+        int index = logs.indexOf(day, id);
+        return index < 0 ? null : deleteAt(day, index);
+    }
+
+    private synchronized LogEntry deleteAt(int day, int index) {
+        LogEntry removed = removeEntry(day, index);
+        if (removed == null) return null;
+        markDirty(day);
+        changed(day);
+        if (journal != null) {
+            journal.append("d;" + day + ";" + index);
+            maybeCompact();
+        }
+        return removed;
+    }
+
+    // Told the epoch day of every entry added or deleted from now on, e.g. to schedule an
+    // autosave of that day's partition; loading and journal replay are not reported
+    public void setChangeListener(IntConsumer listener) {
+        changeListener = listener;
+    }
+
+    private void changed(int day) {
+        IntConsumer listener = changeListener;
+        if (listener != null) listener.accept(day);
+    }
+
+    private LogEntry insert(int day, LogEntry entry) {
+        // Every entry is stored through here, journal records with their raw epoch days too
+        if (day < FIRST_DAY || day > LAST_DAY) {
+            throw new IllegalArgumentException("Date out of range: " + LocalDate.ofEpochDay(day));
+        }
+        if (entry.getId() == 0) {
+            entry = new LogEntry(nextEntryId++, entry.getFood(), entry.getServings());
+        } else {
+            nextEntryId = Math.max(nextEntryId, entry.getId() + 1);
+        }
+        logs.add(day, entry);
+        Food food = entry.getFood();
+        FoodUsage usage = foodUsage.get(food);
+        if (usage == null) {
+            usage = new FoodUsage(food.getCaloriesPerServing());
+            foodUsage.put(food, usage);
+            food.addCalorieListener(calorieListener);
+        }
+        usage.entries++;
+        usage.servingsByDay.merge(day, entry.getServings(), Integer::sum);
+        calorieIndex.add(day, (long) usage.accountedCalories * entry.getServings());
+        return entry;
+    }
+
+    private LogEntry removeEntry(int day, int index) {
+        LogEntry removed = logs.remove(day, index);
+        if (removed != null) release(day, removed);
+        return removed;
+    }
+
+    // Takes an entry's calories back out of the day total, at the rate they were put in
+    private void release(int day, LogEntry entry) {
+        Food food = entry.getFood();
+        FoodUsage usage = foodUsage.get(food);
+        if (usage == null) return;
+        calorieIndex.add(day, -(long) usage.accountedCalories * entry.getServings());
+        usage.servingsByDay.merge(day, -entry.getServings(), Integer::sum);
+        if (usage.servingsByDay.get(day) == 0) usage.servingsByDay.remove(day);
+        if (--usage.entries == 0) {
+            foodUsage.remove(food);
+            food.removeCalorieListener(calorieListener);
         }
     }
 
+    // Moves every day that logs food to its new calories per serving. Runs on whichever thread
+    // changed the food, possibly another user's, so it takes the same lock as every other
+    // change to the totals.
+    private synchronized void onCaloriesChanged(Food food) {
+        FoodUsage usage = foodUsage.get(food);
+        if (usage == null) return;
+        int calories = food.getCaloriesPerServing();
+        int delta = calories - usage.accountedCalories;
+        if (delta == 0) return;
+        for (Map.Entry<Integer, Integer> day : usage.servingsByDay.entrySet()) {
+            calorieIndex.add(day.getKey(), (long) delta * day.getValue());
+        }
+        usage.accountedCalories = calories;
+    }
+
+    // Visits every entry with its date, in date order
+    public void forEachEntry(BiConsumer<String, LogEntry> action) {
+        logs.forEachDay(Integer.MIN_VALUE, Integer.MAX_VALUE, (day, entries) -> {
+            String date = LocalDate.ofEpochDay(day).toString();
+            for (LogEntry entry : entries) {
+                action.accept(date, entry);
+            }
+        });
+    }
+
+    // Visits the days between from and to (inclusive) that have entries, in date order
+    public void forEachDay(LocalDate from, LocalDate to, BiConsumer<LocalDate, List<LogEntry>> action) {
+        logs.forEachDay(clampDay(from), clampDay(to),
+                (day, entries) -> action.accept(LocalDate.ofEpochDay(day), entries));
+    }
+
+    // All entries between from and to (inclusive), in date order
+    public List<LogEntry> entriesBetween(LocalDate from, LocalDate to) {
+        List<LogEntry> entries = new ArrayList<>();
+        forEachDay(from, to, (date, dayEntries) -> entries.addAll(dayEntries));
+        return entries;
+    }
+
+    // Calories logged between from and to (inclusive), in O(log n) over the covered days
+    public synchronized long getTotalCalories(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) return 0;
+        return calorieIndex.rangeTotal(clampDay(from), clampDay(to));
+    }
+
+    // Average calories per calendar day between from and to (inclusive); days without
+    // entries count as zero
+    public double getAverageCalories(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) return 0;
+        long days = to.toEpochDay() - from.toEpochDay() + 1;
+        return (double) getTotalCalories(from, to) / days;
+    }
+
+    // Running total for one day; no entries are walked
+    public synchronized long getDailyCalories(LocalDate date) {
+        return calorieIndex.dayTotal(clampDay(date));
+    }
+
+    // Number of log entries for food, from the usage index; nothing is walked
+    public synchronized int getLogCount(Food food) {
+        FoodUsage usage = foodUsage.get(food);
+        return usage == null ? 0 : usage.entries;
+    }
+
     public List<LogEntry> getLogEntries(String date) {
-        return logs.getOrDefault(date, new ArrayList<>());
+        return logs.entriesOn(toEpochDay(date));
+    }
+
+    // Where one food is logged: total servings per day, and the calories per serving the day
+    // totals currently include for it
+    private static class FoodUsage {
+        int accountedCalories;
+        int entries;
+        final Map<Integer, Integer> servingsByDay = new HashMap<>();
+
+        FoodUsage(int accountedCalories) {
+            this.accountedCalories = accountedCalories;
+        }
+    }
+
+    private static int toEpochDay(String date) {
+        return toEpochDay(LocalDate.parse(date));
+    }
+
+    // Epoch day of a loggable date; others are rejected rather than truncated to an int
+    private static int toEpochDay(LocalDate date) {
+        if (!Validator.isValidDate(date)) {
+            throw new IllegalArgumentException("Date out of range: " + date);
+        }
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    // Epoch day of a query bound; nothing is logged outside the loggable dates, so clamping
+    // to them keeps the answer
+    private static int clampDay(LocalDate date) {
+        return (int) Math.max(FIRST_DAY - 1, Math.min(LAST_DAY + 1, date.toEpochDay()));
     }
 }
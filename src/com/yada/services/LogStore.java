@@ -0,0 +1,38 @@
+package com.yada.services;
+
+import com.yada.models.Food;
+import com.yada.models.LogEntry;
+
+import java.util.List;
+
+// Storage for log entries grouped by epoch day. Entries within a day keep the order they were
+// added in, which is what the index passed to remove refers to. Stores keep each entry's id.
+public interface LogStore {
+    void add(int day, LogEntry entry);
+
+    // Removes and returns the entry at index on day, or null when there is none
+    LogEntry remove(int day, int index);
+
+    // Position of the entry with this id among the entries of day, or -1
+    int indexOf(int day, int id);
+
+    // Read-only entries of one day; only valid until the store next changes
+    List<LogEntry> entriesOn(int day);
+
+    // Visits the days between fromDay and toDay (inclusive) that have entries, in order
+    void forEachDay(int fromDay, int toDay, DayVisitor visitor);
+
+    // Visits the entries between fromDay and toDay (inclusive) field by field, in order,
+    // without materializing LogEntry objects
+    void forEachRecord(int fromDay, int toDay, RecordVisitor visitor);
+
+    int size();
+
+    interface DayVisitor {
+        void visit(int day, List<LogEntry> entries);
+    }
+
+    interface RecordVisitor {
+        void visit(int day, Food food, int servings);
+    }
+}
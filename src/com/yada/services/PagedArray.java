@@ -0,0 +1,101 @@
+package com.yada.services;
+
+import java.util.Arrays;
+
+// Immutable array split into fixed-size pages. An Editor copies only the pages it writes to
+// (plus the page directory), so a new version shares every untouched page with the old one
+// and readers of the old version are never disturbed.
+public final class PagedArray<T> {
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final PagedArray<?> EMPTY = new PagedArray<>(new Object[0][], 0);
+
+    private final Object[][] pages;
+    private final int size;
+
+    private PagedArray(Object[][] pages, int size) {
+        this.pages = pages;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PagedArray<T> empty() {
+        return (PagedArray<T>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        if (index < 0 || index >= size) return null;
+        Object[] page = pages[index >>> PAGE_BITS];
+        return page == null ? null : (T) page[index & PAGE_MASK];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Editor<T> edit() {
+        return new Editor<>(this);
+    }
+
+    // Mutable working copy of one version; build() hands out the next version. Not thread-safe.
+    public static final class Editor<T> {
+        private Object[][] pages;
+        private boolean[] owned;
+        private int size;
+
+        private Editor(PagedArray<T> base) {
+            this.pages = Arrays.copyOf(base.pages, Math.max(base.pages.length, 1));
+            this.owned = new boolean[pages.length];
+            this.size = base.size;
+        }
+
+        @SuppressWarnings("unchecked")
+        public T get(int index) {
+            if (index < 0 || index >= size) return null;
+            Object[] page = pages[index >>> PAGE_BITS];
+            return page == null ? null : (T) page[index & PAGE_MASK];
+        }
+
+        // Writes value at index, growing the array with nulls if index is past the end
+        public void set(int index, T value) {
+            if (index >= size) {
+                if (value == null) return;
+                size = index + 1;
+            }
+            int page = index >>> PAGE_BITS;
+            if (page >= pages.length) {
+                int length = Math.max(pages.length * 2, page + 1);
+                pages = Arrays.copyOf(pages, length);
+                owned = Arrays.copyOf(owned, length);
+            }
+            if (!owned[page]) {
+                pages[page] = pages[page] == null ? new Object[PAGE_SIZE] : pages[page].clone();
+                owned[page] = true;
+            }
+            pages[page][index & PAGE_MASK] = value;
+        }
+
+        public int add(T value) {
+            int index = size;
+            set(index, value);
+            size = index + 1;
+            return index;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // The edited version; the editor must not be used afterwards
+        public PagedArray<T> build() {
+            int used = (size + PAGE_MASK) >>> PAGE_BITS;
+            PagedArray<T> built = new PagedArray<>(Arrays.copyOf(pages, used), size);
+            pages = null;
+            owned = null;
+            return built;
+        }
+    }
+}
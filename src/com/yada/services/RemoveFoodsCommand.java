@@ -0,0 +1,40 @@
+package com.yada.services;
+
+import com.yada.models.Food;
+
+import java.util.List;
+
+// Undoes a food removal, with the composites removed along with it, in one snapshot
+public class RemoveFoodsCommand implements Command {
+    private final FoodDatabase foodDatabase;
+    private final String id;
+    private List<Food> removed;
+
+    // removed as returned by FoodDatabase.removeFood, the requested food first
+    public RemoveFoodsCommand(FoodDatabase foodDatabase, List<Food> removed) {
+        this.foodDatabase = foodDatabase;
+        this.id = removed.get(0).getId();
+        this.removed = removed;
+    }
+
+    @Override
+    public void undo() {
+        foodDatabase.restoreFoods(removed);
+    }
+
+    @Override
+    public void redo() {
+        // Also takes composites built on these foods since the undo
+        removed = foodDatabase.removeFoods(removed);
+    }
+
+    @Override
+    public String describe() {
+        return "removal of food '" + id + "'";
+    }
+
+    @Override
+    public long footprint() {
+        return 64 + 8L * removed.size();
+    }
+}
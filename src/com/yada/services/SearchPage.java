@@ -0,0 +1,68 @@
+package com.yada.services;
+
+import com.yada.models.Food;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One page of a ranked keyword search, best first. The cursor resumes the search right
+// after the last hit of this page; it is null on the last page.
+public class SearchPage {
+    private final List<Hit> hits;
+    private final String nextCursor;
+
+    SearchPage(List<Hit> hits, String nextCursor) {
+        this.hits = hits;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<Hit> getHits() {
+        return hits;
+    }
+
+    public List<Food> getFoods() {
+        List<Food> foods = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            foods.add(hit.getFood());
+        }
+        return foods;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+
+    // A matching food with its score and the number of query keywords it carries
+    public static class Hit {
+        private final Food food;
+        private final double score;
+        private final int matched;
+
+        Hit(Food food, double score, int matched) {
+            this.food = food;
+            this.score = score;
+            this.matched = matched;
+        }
+
+        public Food getFood() {
+            return food;
+        }
+
+        public double getScore() {
+            return score;
+        }
+
+        public int getMatched() {
+            return matched;
+        }
+
+        @Override
+        public String toString() {
+            return food.toString();
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.yada.services;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Line-oriented data split into named segments in one directory, e.g. foods by id bucket or
+// log entries by month, so a save only rewrites the segments that changed.
+//
+// MANIFEST lists the file holding each segment and is the only file ever replaced in place.
+// A save writes every changed segment to a new file (through a temp file, fsynced, renamed),
+// then writes the next MANIFEST the same way and renames it over the old one. Until that
+// rename the old MANIFEST and the files it lists are untouched, so a crash at any point
+// leaves either the old or the new data set, never a mix and never a truncated file.
+// Files the current MANIFEST does not list are leftovers and are deleted.
+//
+// Manifest lines: G;generation, M;legacy file name, then S;segment;file;length per segment,
+// in segment order.
+//
+// Before the first save the data may still be in one legacy text file (foods.txt, log.txt)
+// in the same line format. The first save moves all of it into segments, and every MANIFEST
+// from then on carries the M line, which marks the legacy file as migrated: it is never read
+// again and never deleted, so a copy under version control stays as it was. exportTo writes
+// the current data back out in that format.
+public class SegmentStore {
+    private static final String MANIFEST = "MANIFEST";
+    private static final String TEMP = ".tmp";
+
+    private final Path dir;
+    private final Path legacyFile;
+    // Current manifest contents; read on first use, only changed by commit
+    private TreeMap<String, Entry> entries;
+    private long generation;
+    // Whether the current MANIFEST has the M line
+    private boolean migrated;
+
+    public SegmentStore(Path dir, Path legacyFile) {
+        this.dir = dir;
+        this.legacyFile = legacyFile;
+    }
+
+    // The directory beside a legacy file named after it, e.g. data/foods for data/foods.txt
+    public static Path dirFor(String legacyFile) {
+        Path file = Paths.get(legacyFile);
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return file.resolveSibling(dot > 0 ? name.substring(0, dot) : name + ".d");
+    }
+
+    // A file segment on disk and its expected length
+    private static final class Entry {
+        final String file;
+        final long length;
+
+        Entry(String file, long length) {
+            this.file = file;
+            this.length = length;
+        }
+    }
+
+    // Whether any data has been saved, in segments or the legacy file
+    public boolean exists() {
+        return Files.exists(manifest()) || Files.exists(legacyFile);
+    }
+
+    // Whether the data currently lives in the legacy file rather than in segments: the file
+    // exists and no save has migrated it yet
+    public synchronized boolean usesLegacyFile() {
+        if (!Files.exists(legacyFile)) return false;
+        try {
+            entries();
+            return !migrated;
+        } catch (IOException e) {
+            // Never let an unreadable MANIFEST send a save back to the legacy file
+            return false;
+        }
+    }
+
+    // The file that changes whenever the stored data does: MANIFEST, or the legacy file while
+    // that is in use
+    public Path currentFile() {
+        return usesLegacyFile() ? legacyFile : manifest();
+    }
+
+    // Feeds every stored line to consumer: the legacy file's, or each segment's in segment order
+    public synchronized void read(Consumer<String> consumer) throws IOException {
+        if (usesLegacyFile()) {
+            readLines(legacyFile, consumer);
+            return;
+        }
+        for (Map.Entry<String, Entry> segment : entries().entrySet()) {
+            Path file = dir.resolve(segment.getValue().file);
+            if (Files.size(file) != segment.getValue().length) {
+                System.out.println("Warning: segment " + segment.getKey() + " of " + dir + " has an unexpected length");
+            }
+            readLines(file, consumer);
+        }
+    }
+
+    // Replaces the given segments (an empty list removes one) in one atomic step. With
+    // complete set, the map holds every segment and any other is dropped.
+    public void write(Map<String, List<String>> segments, boolean complete) throws IOException {
+        Update update = update(segments, complete);
+        update.stage();
+        update.commit();
+    }
+
+    // A save split in two steps, so a caller can record the staged MANIFEST (e.g. in a journal
+    // marker) before making it current
+    public Update update(Map<String, List<String>> segments, boolean complete) {
+        return new Update(segments, complete);
+    }
+
+    public final class Update {
+        private final Map<String, List<String>> segments;
+        private final boolean complete;
+        private TreeMap<String, Entry> staged;
+        private long stagedGeneration;
+
+        private Update(Map<String, List<String>> segments, boolean complete) {
+            this.segments = segments;
+            this.complete = complete;
+        }
+
+        // Writes the changed segments and the next MANIFEST as a temp file, all fsynced, and
+        // returns that temp file. Nothing current is modified.
+        public Path stage() throws IOException {
+            synchronized (SegmentStore.this) {
+                Files.createDirectories(dir);
+                TreeMap<String, Entry> current = entries();
+                stagedGeneration = generation + 1;
+                staged = complete ? new TreeMap<>() : new TreeMap<>(current);
+                for (Map.Entry<String, List<String>> segment : segments.entrySet()) {
+                    if (segment.getValue().isEmpty()) {
+                        staged.remove(segment.getKey());
+                        continue;
+                    }
+                    String name = segment.getKey() + "." + stagedGeneration;
+                    long length = writeAtomically(dir.resolve(name), segment.getValue());
+                    staged.put(segment.getKey(), new Entry(name, length));
+                }
+                List<String> manifest = new ArrayList<>(staged.size() + 2);
+                manifest.add("G;" + stagedGeneration);
+                manifest.add("M;" + legacyFile.getFileName());
+                for (Map.Entry<String, Entry> entry : staged.entrySet()) {
+                    manifest.add("S;" + entry.getKey() + ";" + entry.getValue().file + ";" + entry.getValue().length);
+                }
+                Path temp = dir.resolve(MANIFEST + TEMP);
+                writeFile(temp, manifest);
+                return temp;
+            }
+        }
+
+        // Makes the staged MANIFEST current, then deletes the files it no longer lists
+        public void commit() throws IOException {
+            synchronized (SegmentStore.this) {
+                if (staged == null) throw new IllegalStateException("Update not staged");
+                Files.move(dir.resolve(MANIFEST + TEMP), manifest(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                syncDir();
+                entries = staged;
+                generation = stagedGeneration;
+                migrated = true;
+                deleteUnlisted();
+            }
+        }
+    }
+
+    // Writes every stored line to file in the legacy format, through a synced temp file, e.g.
+    // to hand the data to another tool or put it under version control
+    public synchronized void exportTo(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path temp = file.resolveSibling(file.getFileName() + TEMP);
+        try (FileOutputStream out = new FileOutputStream(temp.toFile());
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            read(line -> {
+                try {
+                    writer.write(line);
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.flush();
+            out.getFD().sync();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path manifest() {
+        return dir.resolve(MANIFEST);
+    }
+
+    private TreeMap<String, Entry> entries() throws IOException {
+        if (entries == null) {
+            entries = new TreeMap<>();
+            Path manifest = manifest();
+            if (Files.exists(manifest)) {
+                readLines(manifest, line -> {
+                    String[] parts = line.split(";");
+                    if (parts[0].equals("G")) {
+                        generation = Long.parseLong(parts[1]);
+                    } else if (parts[0].equals("M")) {
+                        migrated = true;
+                    } else if (parts[0].equals("S")) {
+                        entries.put(parts[1], new Entry(parts[2], Long.parseLong(parts[3])));
+                    }
+                });
+            }
+        }
+        return entries;
+    }
+
+    // Removes segment files of earlier saves and temp files of interrupted ones
+    private void deleteUnlisted() throws IOException {
+        Set<String> listed = new HashSet<>();
+        listed.add(MANIFEST);
+        for (Entry entry : entries.values()) listed.add(entry.file);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                if (!listed.contains(file.getFileName().toString())) Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    // Writes lines to a temp file, fsyncs it and renames it to file; returns the length
+    private static long writeAtomically(Path file, List<String> lines) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + TEMP);
+        long length = writeFile(temp, lines);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return length;
+    }
+
+    private static long writeFile(Path file, List<String> lines) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file.toFile());
+             Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+            out.getFD().sync();
+            return out.getChannel().size();
+        }
+    }
+
+    // Makes the renames durable; not every platform can sync a directory, which is not an error
+    private void syncDir() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+
+    private static void readLines(Path file, Consumer<String> consumer) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) consumer.accept(line);
+            }
+        }
+    }
+}
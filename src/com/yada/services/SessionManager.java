@@ -0,0 +1,203 @@
+package com.yada.services;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+// User sessions over one shared FoodDatabase. Each user's log lives in its own partition,
+// <baseDir>/<userId>/log/ with its journal, and is loaded on first use together with the
+// profile saved beside it in <baseDir>/<userId>/profile.txt.
+//
+// Access to a session is serialized by lock striping: a fixed array of locks indexed by a
+// hash of the user id. Requests for different users rarely share a lock, and the number of
+// locks stays fixed however many users there are.
+//
+// A loaded session stays in memory until it is closed: explicitly with close(userId), after
+// being idle once evictIdle is on, or by closeAll. Closing saves the log partition and drops
+// the session with its undo history; the next request loads it and the profile again from disk. Sessions
+// added with register are never evicted.
+public class SessionManager {
+    private static final int STRIPES = 256;
+
+    private final FoodDatabase foodDatabase;
+    private final String baseDir;
+    private final Supplier<LogStore> logStores;
+    private final Map<String, UserSession> sessions = new ConcurrentHashMap<>();
+    // Last use (System.nanoTime) of each session loaded on demand; registered ones are absent
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private volatile AutosaveScheduler autosave;
+    private ScheduledExecutorService evictor;
+
+    public SessionManager(FoodDatabase foodDatabase, String baseDir, Supplier<LogStore> logStores) {
+        this.foodDatabase = foodDatabase;
+        this.baseDir = baseDir;
+        this.logStores = logStores;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // Saves each session's log in the background after it changes, as store "log:<userId>";
+    // applies to sessions registered or loaded from now on
+    public void setAutosave(AutosaveScheduler autosave) {
+        this.autosave = autosave;
+    }
+
+    // Adds an already loaded session, e.g. the CLI user's log kept at the legacy location
+    public void register(UserSession session) {
+        profileStore(session.getUserId()).load(session);
+        watch(session);
+        sessions.put(session.getUserId(), session);
+    }
+
+    // Runs action on the user's session while holding the user's stripe lock, loading the
+    // session first if needed. The user id must pass Validator.isValidUserId.
+    public <T> T withSession(String userId, Function<UserSession, T> action) {
+        ReentrantLock lock = stripeFor(userId);
+        lock.lock();
+        try {
+            UserSession session = sessions.get(userId);
+            if (session == null) {
+                session = load(userId);
+                watch(session);
+                sessions.put(userId, session);
+                lastUsed.put(userId, System.nanoTime());
+            } else {
+                lastUsed.replace(userId, System.nanoTime());
+            }
+            return action.apply(session);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    // Saves and drops a session loaded on demand, e.g. when the user logs out. Returns false
+    // when the user has no such session.
+    public boolean close(String userId) {
+        ReentrantLock lock = stripeFor(userId);
+        lock.lock();
+        try {
+            if (!lastUsed.containsKey(userId)) return false;
+            evict(userId);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Closes sessions loaded on demand once they have not been used for idleMillis, checking
+    // every tenth of that time
+    public synchronized void evictIdle(long idleMillis) {
+        if (evictor != null) evictor.shutdownNow();
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "yada-session-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleMillis / 10);
+        evictor.scheduleWithFixedDelay(() -> closeIdle(TimeUnit.MILLISECONDS.toNanos(idleMillis)),
+                period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Writes every changed log partition and closes the journals, e.g. at shutdown
+    public void closeAll() {
+        synchronized (this) {
+            if (evictor != null) evictor.shutdownNow();
+            evictor = null;
+        }
+        for (String userId : new ArrayList<>(sessions.keySet())) {
+            ReentrantLock lock = stripeFor(userId);
+            lock.lock();
+            try {
+                evict(userId);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void closeIdle(long idleNanos) {
+        for (Map.Entry<String, Long> entry : lastUsed.entrySet()) {
+            if (System.nanoTime() - entry.getValue() < idleNanos) continue;
+            String userId = entry.getKey();
+            ReentrantLock lock = stripeFor(userId);
+            lock.lock();
+            try {
+                // Used again since the check above
+                Long last = lastUsed.get(userId);
+                if (last == null || System.nanoTime() - last < idleNanos) continue;
+                evict(userId);
+            } catch (RuntimeException e) {
+                System.out.println("Error closing session of " + userId + ": " + e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Stops autosaving the session, then saves and closes its log; stripe lock held
+    private void evict(String userId) {
+        UserSession session = sessions.remove(userId);
+        lastUsed.remove(userId);
+        if (session == null) return;
+        AutosaveScheduler scheduler = autosave;
+        if (scheduler != null) scheduler.unregister(storeName(userId));
+        session.getLogManager().compactLogs();
+        session.getLogManager().close();
+    }
+
+    private UserSession load(String userId) {
+        String logFile = baseDir + File.separator + userId + File.separator + "log.txt";
+        LogManager logManager = new LogManager(logStores.get(), logFile);
+        // A new user has no log yet; skip the "not found" notice loadLogs would print
+        if (logManager.hasSavedLogs()) {
+            logManager.loadLogs(foodDatabase);
+        }
+        logManager.replayJournal(foodDatabase);
+        UserSession session = new UserSession(userId, logManager);
+        profileStore(userId).load(session);
+        return session;
+    }
+
+    // Saves the session's profile and goal method; call under the user's stripe lock, e.g.
+    // from withSession
+    public void saveProfile(UserSession session) {
+        profileStore(session.getUserId()).save(session);
+    }
+
+    private UserProfileStore profileStore(String userId) {
+        return new UserProfileStore(baseDir + File.separator + userId + File.separator + "profile.txt");
+    }
+
+    private void watch(UserSession session) {
+        AutosaveScheduler scheduler = autosave;
+        if (scheduler == null) return;
+        LogManager logManager = session.getLogManager();
+        // The LogManager methods are synchronized, so the flush needs no stripe lock
+        AutosaveScheduler.Store store = scheduler.register(storeName(session.getUserId()),
+                days -> logManager.compactLogs());
+        logManager.setChangeListener(store::markDirty);
+    }
+
+    private static String storeName(String userId) {
+        return "log:" + userId;
+    }
+
+    private ReentrantLock stripeFor(String userId) {
+        int h = userId.hashCode();
+        // Spread the high bits down, as HashMap does, before masking
+        return stripes[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+}
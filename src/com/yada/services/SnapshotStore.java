@@ -0,0 +1,266 @@
+package com.yada.services;
+
+import com.yada.models.CompositeFood;
+import com.yada.models.Food;
+import com.yada.models.LogEntry;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.*;
+
+// Binary snapshot of foods and logs, written next to the text data so startup does not have
+// to parse it. The segment files stay the source of truth; the snapshot records the size and
+// modification time of the foods and log MANIFESTs (or of foods.txt and log.txt before their
+// first save) and is ignored (and rebuilt) as soon as either changes.
+//
+// Layout (big-endian):
+//   header     magic, version, foods manifest length/mtime, log manifest length/mtime
+//   strings    count, offsets[count + 1], byte length, UTF-8 bytes (ids and keywords, deduplicated)
+//   keywords   count, string index per keyword slot
+//   components count, (food record index, servings) pairs
+//   foods      count, fixed-width records: kind, id string, calories, keyword start/count, component start/count
+//   logs       count, fixed-width records: epoch day, food record index, servings
+public class SnapshotStore {
+    private static final int MAGIC = 0x59414441; // "YADA"
+    private static final int VERSION = 1;
+    private static final int KIND_BASIC = 0;
+    private static final int KIND_COMPOSITE = 1;
+
+    private final String snapshotFile;
+
+    public SnapshotStore() {
+        this("data/snapshot.bin");
+    }
+
+    public SnapshotStore(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    // Loads foods and logs from the snapshot. Returns false, leaving both stores untouched,
+    // when the snapshot is missing, stale or unreadable.
+    public boolean load(FoodDatabase foodDatabase, LogManager logManager) {
+        Path path = Paths.get(snapshotFile);
+        if (!Files.exists(path)) return false;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return false;
+            if (!matches(buffer, foodDatabase.getStorageFile()) || !matches(buffer, logManager.getStorageFile())) return false;
+
+            String[] strings = readStrings(buffer);
+
+            int[] keywordRefs = new int[buffer.getInt()];
+            buffer.asIntBuffer().get(keywordRefs);
+            buffer.position(buffer.position() + keywordRefs.length * 4);
+
+            int[] componentRefs = new int[buffer.getInt() * 2];
+            buffer.asIntBuffer().get(componentRefs);
+            buffer.position(buffer.position() + componentRefs.length * 4);
+
+            int foodCount = buffer.getInt();
+            Food[] foods = new Food[foodCount];
+            int[][] components = new int[foodCount][];
+            for (int i = 0; i < foodCount; i++) {
+                int kind = buffer.getInt();
+                String id = strings[buffer.getInt()];
+                int calories = buffer.getInt();
+                int kwStart = buffer.getInt();
+                int kwCount = buffer.getInt();
+                int compStart = buffer.getInt();
+                int compCount = buffer.getInt();
+
+                String[] keywords = new String[kwCount];
+                for (int k = 0; k < kwCount; k++) {
+                    keywords[k] = strings[keywordRefs[kwStart + k]];
+                }
+                if (kind == KIND_COMPOSITE) {
+                    foods[i] = new CompositeFood(id, Arrays.asList(keywords));
+                    components[i] = Arrays.copyOfRange(componentRefs, compStart * 2, (compStart + compCount) * 2);
+                } else {
+                    foods[i] = new Food(id, Arrays.asList(keywords), calories);
+                }
+            }
+            // Component references are record indexes, so no id lookups are needed
+            for (int i = 0; i < foodCount; i++) {
+                if (components[i] == null) continue;
+                for (int c = 0; c < components[i].length; c += 2) {
+                    ((CompositeFood) foods[i]).addComponent(foods[components[i][c]], components[i][c + 1]);
+                }
+            }
+
+            int logCount = buffer.getInt();
+            int[] logRecords = new int[logCount * 3];
+            buffer.asIntBuffer().get(logRecords);
+
+            // Everything decoded; only now touch the stores
+            foodDatabase.addSavedFoods(Arrays.asList(foods));
+            LocalDate lastDate = null;
+            for (int i = 0; i < logRecords.length; i += 3) {
+                if (lastDate == null || lastDate.toEpochDay() != logRecords[i]) {
+                    lastDate = LocalDate.ofEpochDay(logRecords[i]);
+                }
+                logManager.addSavedEntry(lastDate, new LogEntry(foods[logRecords[i + 1]], logRecords[i + 2]));
+            }
+            return true;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | ClassCastException e) {
+            System.out.println("Snapshot unreadable, loading text files: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Writes a snapshot of the current state, stamped with the text files it corresponds to
+    public void save(FoodDatabase foodDatabase, LogManager logManager) {
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        List<Food> foods = foodDatabase.getAllFoods();
+        Map<Food, Integer> recordIndex = new IdentityHashMap<>();
+        for (int i = 0; i < foods.size(); i++) {
+            recordIndex.put(foods.get(i), i);
+        }
+
+        IntList keywordRefs = new IntList();
+        IntList componentRefs = new IntList();
+        IntList foodRecords = new IntList();
+        for (Food food : foods) {
+            int kwStart = keywordRefs.size();
+            for (String keyword : food.getKeywords()) {
+                keywordRefs.add(intern(keyword, stringIds, strings));
+            }
+            int compStart = componentRefs.size() / 2;
+            boolean composite = food instanceof CompositeFood;
+            if (composite) {
+                for (Map.Entry<Food, Integer> component : ((CompositeFood) food).getComponents().entrySet()) {
+                    Integer index = recordIndex.get(component.getKey());
+                    if (index == null) continue;
+                    componentRefs.add(index);
+                    componentRefs.add(component.getValue());
+                }
+            }
+            foodRecords.add(composite ? KIND_COMPOSITE : KIND_BASIC);
+            foodRecords.add(intern(food.getId(), stringIds, strings));
+            foodRecords.add(composite ? 0 : food.getCaloriesPerServing());
+            foodRecords.add(kwStart);
+            foodRecords.add(keywordRefs.size() - kwStart);
+            foodRecords.add(compStart);
+            foodRecords.add(componentRefs.size() / 2 - compStart);
+        }
+
+        // Log entries resolve by id, exactly as a reload of the log would
+        IntList logRecords = new IntList();
+        try {
+            logManager.forEachEntry((date, entry) -> {
+                Food food = foodDatabase.findFoodById(entry.getFood().getId());
+                Integer index = food == null ? null : recordIndex.get(food);
+                if (index == null) return;
+                logRecords.add(Math.toIntExact(LocalDate.parse(date).toEpochDay()));
+                logRecords.add(index);
+                logRecords.add(entry.getServings());
+            });
+        } catch (RuntimeException e) {
+            System.out.println("Snapshot not written: " + e.getMessage());
+            return;
+        }
+
+        Path target = Paths.get(snapshotFile);
+        Path temp = Paths.get(snapshotFile + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeFingerprint(out, foodDatabase.getStorageFile());
+            writeFingerprint(out, logManager.getStorageFile());
+
+            byte[][] encoded = new byte[strings.size()][];
+            int offset = 0;
+            out.writeInt(strings.size());
+            out.writeInt(0);
+            for (int i = 0; i < encoded.length; i++) {
+                encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+                offset += encoded[i].length;
+                out.writeInt(offset);
+            }
+            out.writeInt(offset);
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+
+            out.writeInt(keywordRefs.size());
+            keywordRefs.writeTo(out);
+            out.writeInt(componentRefs.size() / 2);
+            componentRefs.writeTo(out);
+            out.writeInt(foods.size());
+            foodRecords.writeTo(out);
+            out.writeInt(logRecords.size() / 3);
+            logRecords.writeTo(out);
+        } catch (IOException e) {
+            System.out.println("Error writing snapshot: " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Error writing snapshot: " + e.getMessage());
+        }
+    }
+
+    private static boolean matches(MappedByteBuffer buffer, String textFile) {
+        File file = new File(textFile);
+        long length = buffer.getLong();
+        long modified = buffer.getLong();
+        return file.exists() && file.length() == length && file.lastModified() == modified;
+    }
+
+    private static void writeFingerprint(DataOutputStream out, String textFile) throws IOException {
+        File file = new File(textFile);
+        out.writeLong(file.exists() ? file.length() : -1);
+        out.writeLong(file.exists() ? file.lastModified() : -1);
+    }
+
+    private static String[] readStrings(MappedByteBuffer buffer) {
+        int count = buffer.getInt();
+        int[] offsets = new int[count + 1];
+        buffer.asIntBuffer().get(offsets);
+        buffer.position(buffer.position() + offsets.length * 4);
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        String[] strings = new String[count];
+        for (int i = 0; i < count; i++) {
+            strings[i] = new String(bytes, offsets[i], offsets[i + 1] - offsets[i], StandardCharsets.UTF_8);
+        }
+        return strings;
+    }
+
+    private static int intern(String value, Map<String, Integer> ids, List<String> strings) {
+        Integer id = ids.get(value);
+        if (id == null) {
+            id = strings.size();
+            ids.put(value, id);
+            strings.add(value);
+        }
+        return id;
+    }
+
+    // Growable int array, so record sections are not built from boxed Integers
+    private static class IntList {
+        private int[] values = new int[64];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeInt(values[i]);
+            }
+        }
+    }
+}
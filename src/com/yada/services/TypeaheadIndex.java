@@ -0,0 +1,348 @@
+package com.yada.services;
+
+import com.yada.models.Food;
+
+import java.util.*;
+
+// Suggestions for a partially typed food id or keyword: completions first, then near misses
+// within a small edit distance. Both match from the start of the term or of any word in it,
+// so "brea" and "brest" find "chicken breast" as well as "chick" and "chiken" do.
+//
+// Terms live in immutable segments. A segment is a sorted array of entries, one per word start
+// of each term, keyed by the rest of the term from there. Sorted keys are a trie in array form:
+// the keys under a prefix are one contiguous range, found by binary search. Completions read
+// that range; near misses walk the implicit trie depth first, carrying one row of the edit
+// distance table per node and giving up on a branch once every cell exceeds the bound, so the
+// work depends on the bound and the input, not on the catalog size.
+//
+// New terms form a new segment and segments merge like a binary counter, so each term is copied
+// O(log n) times however the catalog grows. Removal stamps the term with the version that drops
+// it, and each index only treats terms stamped at or below its own version as dead, so versions
+// already published never see the removal. A segment that is mostly dead is rewritten on the
+// next build. Instances are immutable as far as readers can tell and safe to share between threads.
+public final class TypeaheadIndex {
+    private static final TypeaheadIndex EMPTY = new TypeaheadIndex(new Segment[0], 0);
+    private static final Comparator<Match> ORDER = Comparator.comparingInt((Match m) -> m.distance)
+            .thenComparing(m -> m.key).thenComparing(m -> m.term.text);
+
+    private final Segment[] segments;
+    // Terms removed in this version or earlier are dead here
+    private final long version;
+
+    private TypeaheadIndex(Segment[] segments, long version) {
+        this.segments = segments;
+        this.version = version;
+    }
+
+    public static TypeaheadIndex empty() {
+        return EMPTY;
+    }
+
+    // One suggestion: a food (by id) or a keyword, with its edit distance from the input
+    public static final class Suggestion {
+        private final String text;
+        private final Food food;
+        private final int distance;
+
+        Suggestion(String text, Food food, int distance) {
+            this.text = text;
+            this.food = food;
+            this.distance = distance;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        // The food for an id suggestion, null for a keyword
+        public Food getFood() {
+            return food;
+        }
+
+        public boolean isKeyword() {
+            return food == null;
+        }
+
+        public int getDistance() {
+            return distance;
+        }
+
+        @Override
+        public String toString() {
+            return isKeyword() ? text + " (keyword)" : food.toString();
+        }
+    }
+
+    // A food id or keyword as indexed. Only the writer touches removedIn and segment.
+    public static final class Term {
+        final String key;
+        final String text;
+        final Food food;
+        // Version of the index that first leaves the term out; never set back
+        volatile long removedIn = Long.MAX_VALUE;
+        private Segment segment;
+
+        private Term(String key, String text, Food food) {
+            this.key = key;
+            this.text = text;
+            this.food = food;
+        }
+    }
+
+    // Up to limit suggestions for partial: completions in key order, then near misses by
+    // distance and key
+    public List<Suggestion> suggest(String partial, int limit) {
+        String query = fold(partial);
+        List<Suggestion> results = new ArrayList<>();
+        if (query.isEmpty() || limit <= 0) return results;
+
+        Set<Term> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Match> matches = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.complete(query, limit, version, matches);
+        }
+        take(matches, limit, seen, results);
+        // A near miss needs a few typed characters to mean anything. Widen the bound one edit
+        // at a time: the closer matches rank first anyway and usually fill the list.
+        int maxDistance = query.length() < 4 ? 0 : query.length() < 10 ? 1 : 2;
+        for (int distance = 1; distance <= maxDistance && results.size() < limit; distance++) {
+            matches.clear();
+            for (Segment segment : segments) {
+                segment.nearMisses(query, distance, limit - results.size(), version, seen, matches);
+            }
+            take(matches, limit, seen, results);
+        }
+        return results;
+    }
+
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    // Adds the best matches to results, each term once, until it holds limit
+    private static void take(List<Match> matches, int limit, Set<Term> seen, List<Suggestion> results) {
+        matches.sort(ORDER);
+        for (Match match : matches) {
+            if (results.size() == limit) return;
+            if (seen.add(match.term)) {
+                results.add(new Suggestion(match.term.text, match.term.food, match.distance));
+            }
+        }
+    }
+
+    // A term reached through the entry with this key
+    private static final class Match {
+        final Term term;
+        final String key;
+        final int distance;
+
+        Match(Term term, String key, int distance) {
+            this.term = term;
+            this.key = key;
+            this.distance = distance;
+        }
+    }
+
+    static String fold(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Offsets of the words in key after the first
+    private static List<Integer> wordStarts(String key) {
+        List<Integer> starts = new ArrayList<>();
+        for (int i = 1; i < key.length(); i++) {
+            char before = key.charAt(i - 1);
+            char c = key.charAt(i);
+            if ((before == ' ' || before == '_') && c != ' ' && c != '_') starts.add(i);
+        }
+        return starts;
+    }
+
+    // Sorted entries: keys[i] is terms[i].key from one of its word starts
+    private static final class Segment {
+        final String[] keys;
+        final Term[] terms;
+        int dead;   // entries of removed terms, writer-only
+
+        Segment(String[] keys, Term[] terms) {
+            this.keys = keys;
+            this.terms = terms;
+            for (Term term : terms) term.segment = this;
+        }
+
+        int live() {
+            return keys.length - dead;
+        }
+
+        // First entry whose key is not less than prefix, from lo
+        private int lowerBound(String prefix, int lo, int hi) {
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(prefix) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        // Adds up to limit entries live in version whose key starts with prefix, in key order
+        void complete(String prefix, int limit, long version, List<Match> out) {
+            int added = 0;
+            for (int i = lowerBound(prefix, 0, keys.length); i < keys.length && added < limit && keys[i].startsWith(prefix); i++) {
+                if (terms[i].removedIn <= version) continue;
+                out.add(new Match(terms[i], keys[i], 0));
+                added++;
+            }
+        }
+
+        // Adds up to limit terms live in version, not already seen, whose key has a prefix
+        // within maxDistance of query, the closest first
+        void nearMisses(String query, int maxDistance, int limit, long version, Set<Term> seen, List<Match> out) {
+            int[] row = new int[query.length() + 1];
+            for (int i = 0; i < row.length; i++) row[i] = i;
+            List<int[]> ranges = new ArrayList<>();
+            walk(query, maxDistance, 0, keys.length, 0, row, maxDistance + 1, ranges);
+            // Ranges are disjoint, so ordering them by distance and start lists the entries in
+            // the order suggestions are ranked
+            ranges.sort(Comparator.comparingInt((int[] r) -> r[2]).thenComparingInt(r -> r[0]));
+            int added = 0;
+            Set<Term> taken = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int[] range : ranges) {
+                for (int i = range[0]; i < range[1] && added < limit; i++) {
+                    Term term = terms[i];
+                    if (term.removedIn <= version || seen.contains(term) || !taken.add(term)) continue;
+                    out.add(new Match(term, keys[i], range[2]));
+                    added++;
+                }
+                if (added == limit) return;
+            }
+        }
+
+        // Visits the implicit trie node for the entries lo..hi, which share their first depth
+        // characters. row holds the distances from each query prefix to those characters, and
+        // best the smallest distance of the whole query to a prefix of them so far. Emits
+        // {from, to, distance} ranges whose entries are all within maxDistance.
+        private void walk(String query, int maxDistance, int lo, int hi, int depth, int[] row, int best,
+                          List<int[]> out) {
+            // Keys that end here
+            int i = lo;
+            while (i < hi && keys[i].length() == depth) i++;
+            if (i > lo && best <= maxDistance) out.add(new int[]{lo, i, best});
+            while (i < hi) {
+                char c = keys[i].charAt(depth);
+                int end = childEnd(i, hi, depth, c);
+                int[] next = new int[row.length];
+                next[0] = row[0] + 1;
+                int min = next[0];
+                for (int q = 1; q < row.length; q++) {
+                    int cost = row[q - 1] + (query.charAt(q - 1) == c ? 0 : 1);
+                    next[q] = Math.min(cost, Math.min(row[q], next[q - 1]) + 1);
+                    min = Math.min(min, next[q]);
+                }
+                int childBest = Math.min(best, next[query.length()]);
+                if (min <= maxDistance) {
+                    walk(query, maxDistance, i, end, depth + 1, next, childBest, out);
+                } else if (childBest <= maxDistance) {
+                    // No longer key can do better, so the whole subtree matches at childBest
+                    out.add(new int[]{i, end, childBest});
+                }
+                i = end;
+            }
+        }
+
+        // End of the entries from lo whose character at depth is c
+        private int childEnd(int lo, int hi, int depth, char c) {
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].charAt(depth) <= c) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    // Collects one version's additions and removals; build() hands out the next version.
+    // Only one editor may be open at a time (the FoodDatabase writer lock). Not thread-safe.
+    public static final class Editor {
+        private final Segment[] base;
+        private final long version;
+        private final List<Term> added = new ArrayList<>();
+
+        private Editor(TypeaheadIndex index) {
+            this.base = index.segments;
+            this.version = index.version + 1;
+        }
+
+        // Indexes a food id (food != null) or a keyword (food == null); keep the term to remove it
+        public Term add(String text, Food food) {
+            Term term = new Term(fold(text), text, food);
+            added.add(term);
+            return term;
+        }
+
+        // Drops term from the version being built; published versions still hold it
+        public void remove(Term term) {
+            if (term.removedIn != Long.MAX_VALUE) return;
+            term.removedIn = version;
+            if (term.segment != null) term.segment.dead += 1 + wordStarts(term.key).size();
+        }
+
+        public TypeaheadIndex build() {
+            List<Segment> segments = new ArrayList<>();
+            for (Segment segment : base) {
+                if (segment.live() == 0) continue;
+                // Rewrite mostly dead segments so ranges stay dense
+                segments.add(segment.dead * 2 > segment.keys.length ? merge(segment, null) : segment);
+            }
+            Segment fresh = fresh();
+            if (fresh != null) segments.add(fresh);
+            // Merge the newest segment into the one before it while that one is not larger
+            while (segments.size() >= 2
+                    && segments.get(segments.size() - 2).live() <= segments.get(segments.size() - 1).live()) {
+                Segment last = segments.remove(segments.size() - 1);
+                Segment previous = segments.remove(segments.size() - 1);
+                segments.add(merge(previous, last));
+            }
+            return new TypeaheadIndex(segments.toArray(new Segment[0]), version);
+        }
+
+        // A segment of the live added terms, or null when there are none
+        private Segment fresh() {
+            List<Match> entries = new ArrayList<>();
+            for (Term term : added) {
+                if (term.removedIn <= version) continue;
+                entries.add(new Match(term, term.key, 0));
+                for (int start : wordStarts(term.key)) {
+                    entries.add(new Match(term, term.key.substring(start), 0));
+                }
+            }
+            if (entries.isEmpty()) return null;
+            entries.sort(Comparator.comparing((Match m) -> m.key));
+            String[] keys = new String[entries.size()];
+            Term[] terms = new Term[entries.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = entries.get(i).key;
+                terms[i] = entries.get(i).term;
+            }
+            return new Segment(keys, terms);
+        }
+
+        // Live entries of a and b (b may be null), in key order
+        private Segment merge(Segment a, Segment b) {
+            int bLength = b == null ? 0 : b.keys.length;
+            String[] keys = new String[a.keys.length + bLength];
+            Term[] terms = new Term[keys.length];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < a.keys.length || j < bLength) {
+                boolean fromA = j == bLength || (i < a.keys.length && a.keys[i].compareTo(b.keys[j]) <= 0);
+                Term term = fromA ? a.terms[i] : b.terms[j];
+                String key = fromA ? a.keys[i++] : b.keys[j++];
+                if (term.removedIn <= version) continue;
+                keys[k] = key;
+                terms[k++] = term;
+            }
+            return new Segment(Arrays.copyOf(keys, k), Arrays.copyOf(terms, k));
+        }
+    }
+}
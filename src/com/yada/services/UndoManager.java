@@ -1,21 +1,135 @@
 package com.yada.services;
 
-import java.util.Stack;
-
+// Undo/redo history kept in a ring buffer. It holds at most capacity entries and about
+// memoryCap bytes of command state, dropping the oldest entries first; the newest entry is
+// always kept. Undone entries stay for redo until a new command is added. Commands added
+// between beginGroup and endGroup become one entry, undone and redone together.
+//
+// Not thread-safe: the server only touches a session's history under that session's lock.
 public class UndoManager {
-    private Stack<Command> commandStack = new Stack<>();
+    public static final int DEFAULT_CAPACITY = 100;
+    public static final long DEFAULT_MEMORY_CAP = 16L << 20;
+
+    private final Command[] ring;
+    // Footprint of each entry when it was added, so dropping it subtracts the same amount
+    private final long[] footprints;
+    private final long memoryCap;
+    private int oldest;
+    // Entries in the ring, oldest first; the first undoable can be undone, the rest redone
+    private int size;
+    private int undoable;
+    private long footprint;
+    private CommandGroup group;
+    private int groupDepth;
+
+    public UndoManager() {
+        this(DEFAULT_CAPACITY, DEFAULT_MEMORY_CAP);
+    }
+
+    public UndoManager(int capacity, long memoryCap) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive.");
+        this.ring = new Command[capacity];
+        this.footprints = new long[capacity];
+        this.memoryCap = memoryCap;
+    }
 
     public void addCommand(Command cmd) {
-        commandStack.push(cmd);
+        if (groupDepth > 0) {
+            group.add(cmd);
+        } else {
+            push(cmd);
+        }
+    }
+
+    // Starts collecting commands into one entry; groups nest, and only the outermost
+    // endGroup adds the entry
+    public void beginGroup(String description) {
+        if (groupDepth++ == 0) group = new CommandGroup(description);
+    }
+
+    public void endGroup() {
+        if (groupDepth == 0) throw new IllegalStateException("No open group.");
+        if (--groupDepth > 0) return;
+        CommandGroup finished = group;
+        group = null;
+        if (!finished.isEmpty()) push(finished);
     }
 
     public void undo() {
-        if (!commandStack.isEmpty()) {
-            Command cmd = commandStack.pop();
-            cmd.undo();
-            System.out.println("Undo completed.");
-        } else {
-            System.out.println("No commands to undo.");
+        try {
+            Command cmd = undoLast();
+            System.out.println(cmd == null ? "No commands to undo." : "Undid " + cmd.describe() + ".");
+        } catch (IllegalStateException e) {
+            System.out.println("Cannot undo: " + e.getMessage());
         }
     }
+
+    public void redo() {
+        try {
+            Command cmd = redoLast();
+            System.out.println(cmd == null ? "No commands to redo." : "Redid " + cmd.describe() + ".");
+        } catch (IllegalStateException e) {
+            System.out.println("Cannot redo: " + e.getMessage());
+        }
+    }
+
+    // Undoes the most recent command without reporting; returns it, or null when there is none.
+    // A command that refuses (IllegalStateException) stays where it is in the history.
+    public Command undoLast() {
+        if (undoable == 0) return null;
+        Command cmd = at(undoable - 1);
+        cmd.undo();
+        undoable--;
+        return cmd;
+    }
+
+    // Redoes the most recently undone command; returns it, or null when there is none
+    public Command redoLast() {
+        if (undoable == size) return null;
+        Command cmd = at(undoable);
+        cmd.redo();
+        undoable++;
+        return cmd;
+    }
+
+    public boolean canUndo() {
+        return undoable > 0;
+    }
+
+    public boolean canRedo() {
+        return undoable < size;
+    }
+
+    private void push(Command cmd) {
+        // A new change ends the redo chain
+        while (size > undoable) {
+            int slot = slot(--size);
+            footprint -= footprints[slot];
+            ring[slot] = null;
+        }
+        if (size == ring.length) dropOldest();
+        int slot = slot(size);
+        ring[slot] = cmd;
+        footprints[slot] = cmd.footprint();
+        footprint += footprints[slot];
+        size++;
+        undoable++;
+        while (footprint > memoryCap && size > 1) dropOldest();
+    }
+
+    private void dropOldest() {
+        footprint -= footprints[oldest];
+        ring[oldest] = null;
+        oldest = (oldest + 1) % ring.length;
+        size--;
+        undoable--;
+    }
+
+    private Command at(int index) {
+        return ring[slot(index)];
+    }
+
+    private int slot(int index) {
+        return (oldest + index) % ring.length;
+    }
 }
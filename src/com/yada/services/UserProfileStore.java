@@ -0,0 +1,56 @@
+package com.yada.services;
+
+import com.yada.models.UserProfile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Locale;
+
+// A user's profile and goal method, kept next to their log so both outlive the session.
+// One line: gender;height;age;weight;activityLevel;method (1 or 2)
+public class UserProfileStore {
+    private final String profileFile;
+
+    public UserProfileStore(String profileFile) {
+        this.profileFile = profileFile;
+    }
+
+    // Puts the saved profile and method into session; leaves it as is when none was saved
+    public void load(UserSession session) {
+        Path file = Paths.get(profileFile);
+        if (!Files.exists(file)) return;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (line == null) return;
+            String[] parts = line.trim().split(";");
+            if (parts.length < 6) {
+                System.out.println("Skipping malformed profile: " + profileFile);
+                return;
+            }
+            session.setUserProfile(new UserProfile(parts[0], Double.parseDouble(parts[1]), Integer.parseInt(parts[2]),
+                    Double.parseDouble(parts[3]), Double.parseDouble(parts[4])));
+            session.setDietGoalCalculator(parts[5].equals("2") ? new MethodTwoCalculator() : new MethodOneCalculator());
+        } catch (IOException | NumberFormatException e) {
+            System.out.println("Error loading profile: " + e.getMessage());
+        }
+    }
+
+    // Writes the session's profile through a temp file, so a crash leaves the old one intact
+    public void save(UserSession session) {
+        UserProfile profile = session.getUserProfile();
+        if (profile == null) return;
+        int method = session.getDietGoalCalculator() instanceof MethodTwoCalculator ? 2 : 1;
+        Path file = Paths.get(profileFile);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(temp, String.format(Locale.ROOT, "%s;%s;%d;%s;%s;%d%n", profile.getGender(),
+                    profile.getHeight(), profile.getAge(), profile.getWeight(), profile.getActivityLevel(), method),
+                    StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.out.println("Error saving profile: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.yada.services;
+
+import com.yada.models.UserProfile;
+
+// Per-user state: the user's log partition, undo history, profile and goal method. The food
+// catalog is shared and lives outside. Not thread-safe on its own; SessionManager hands a
+// session out only under its user's stripe lock.
+public class UserSession {
+    private final String userId;
+    private final LogManager logManager;
+    private final UndoManager undoManager = new UndoManager();
+    private UserProfile userProfile;
+    // Default to Method One. User can switch later.
+    private DietGoalCalculator dietGoalCalculator = new MethodOneCalculator();
+
+    public UserSession(String userId, LogManager logManager) {
+        this.userId = userId;
+        this.logManager = logManager;
+    }
+
+    public String getUserId() {
+        return userId;
+    }
+
+    public LogManager getLogManager() {
+        return logManager;
+    }
+
+    public UndoManager getUndoManager() {
+        return undoManager;
+    }
+
+    public UserProfile getUserProfile() {
+        return userProfile;
+    }
+
+    public void setUserProfile(UserProfile userProfile) {
+        this.userProfile = userProfile;
+    }
+
+    public DietGoalCalculator getDietGoalCalculator() {
+        return dietGoalCalculator;
+    }
+
+    public void setDietGoalCalculator(DietGoalCalculator dietGoalCalculator) {
+        this.dietGoalCalculator = dietGoalCalculator;
+    }
+}
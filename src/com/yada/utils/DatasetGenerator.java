@@ -0,0 +1,345 @@
+package com.yada.utils;
+
+import com.yada.models.CompositeFood;
+import com.yada.models.Food;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
+
+// Deterministic synthetic data at any scale: a food catalog (foods.txt), a log history
+// (log.txt) and CSV/JSON import fixtures. The same seed and settings always give the same files.
+//
+// Basic foods are food0..food(N-1) and composites recipe0..recipe(M-1). Keywords kw0..kw(V-1)
+// are drawn from a Zipf distribution, so kw0 is the most common. Composites are spread over
+// depth levels: a level 1 recipe is made of basic foods only, and a level k recipe has one
+// level k-1 recipe among its fanOut components. Log entries pick foods by a second Zipf
+// distribution over the whole catalog.
+//
+// Everything is streamed to disk, so files far larger than the heap can be written.
+//
+// Usage: DatasetGenerator [--out data-large] [--seed 42] [--foods 100000] [--composites 10000]
+//                         [--keywords 5000] [--keywords-per-food 3] [--keyword-skew 1.0]
+//                         [--depth 3] [--fan-out 3] [--days 1825] [--entries-per-day 6]
+//                         [--food-skew 0.8] [--start 2020-01-01] [--import-rows 100000]
+public class DatasetGenerator {
+    private long seed = 42;
+    private int basicFoods = 100_000;
+    private int compositeFoods = 10_000;
+    private int vocabulary = 5_000;
+    private int keywordsPerFood = 3;
+    private double keywordSkew = 1.0;
+    private int depth = 3;
+    private int fanOut = 3;
+    private int days = 5 * 365;
+    private int entriesPerDay = 6;
+    private double foodSkew = 0.8;
+    private LocalDate startDate = LocalDate.of(2020, 1, 1);
+    private int importRows = 100_000;
+
+    // Cumulative distributions, built on first use
+    private double[] keywordCdf;
+    private double[] foodCdf;
+
+    public static void main(String[] args) throws IOException {
+        DatasetGenerator generator = new DatasetGenerator();
+        Path out = Paths.get("data-large");
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--out" -> out = Paths.get(value);
+                case "--seed" -> generator.setSeed(Long.parseLong(value));
+                case "--foods" -> generator.setBasicFoods(Integer.parseInt(value));
+                case "--composites" -> generator.setCompositeFoods(Integer.parseInt(value));
+                case "--keywords" -> generator.setVocabulary(Integer.parseInt(value));
+                case "--keywords-per-food" -> generator.setKeywordsPerFood(Integer.parseInt(value));
+                case "--keyword-skew" -> generator.setKeywordSkew(Double.parseDouble(value));
+                case "--depth" -> generator.setDepth(Integer.parseInt(value));
+                case "--fan-out" -> generator.setFanOut(Integer.parseInt(value));
+                case "--days" -> generator.setDays(Integer.parseInt(value));
+                case "--entries-per-day" -> generator.setEntriesPerDay(Integer.parseInt(value));
+                case "--food-skew" -> generator.setFoodSkew(Double.parseDouble(value));
+                case "--start" -> generator.setStartDate(LocalDate.parse(value));
+                case "--import-rows" -> generator.setImportRows(Integer.parseInt(value));
+                default -> {
+                    System.out.println("Unknown option: " + args[i]);
+                    return;
+                }
+            }
+        }
+        long start = System.nanoTime();
+        generator.writeAll(out);
+        System.out.printf("Wrote %d foods, %d log entries and %d import rows to %s in %.1f s%n",
+                generator.getCatalogSize(), (long) generator.days * generator.entriesPerDay,
+                generator.importRows, out, (System.nanoTime() - start) / 1e9);
+    }
+
+    // foods.txt, log.txt, foods.csv and foods.json in dir
+    public void writeAll(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        writeFoods(dir.resolve("foods.txt"));
+        writeLog(dir.resolve("log.txt"));
+        writeCsv(dir.resolve("foods.csv"));
+        writeJson(dir.resolve("foods.json"));
+    }
+
+    // B;id;calories;kw,.. lines, then C;id;kw,..;component:servings,.. lines in level order,
+    // so every component is defined before the recipes that use it
+    public void writeFoods(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            generateCatalog(new FoodSink() {
+                @Override
+                public void basic(int index, int calories, List<String> keywords) throws IOException {
+                    writer.write("B;" + foodId(index) + ";" + calories + ";" + String.join(",", keywords));
+                    writer.newLine();
+                }
+
+                @Override
+                public void composite(int index, List<String> keywords, int[] components, int[] servings) throws IOException {
+                    StringBuilder line = new StringBuilder("C;").append(foodId(index)).append(';')
+                            .append(String.join(",", keywords)).append(';');
+                    for (int i = 0; i < components.length; i++) {
+                        if (i > 0) line.append(',');
+                        line.append(foodId(components[i])).append(':').append(servings[i]);
+                    }
+                    writer.write(line.toString());
+                    writer.newLine();
+                }
+            });
+        }
+    }
+
+    // The same catalog as writeFoods, as objects: basic foods first, then composites
+    public List<Food> buildFoods() {
+        List<Food> foods = new ArrayList<>(getCatalogSize());
+        try {
+            generateCatalog(new FoodSink() {
+                @Override
+                public void basic(int index, int calories, List<String> keywords) {
+                    foods.add(new Food(foodId(index), keywords, calories));
+                }
+
+                @Override
+                public void composite(int index, List<String> keywords, int[] components, int[] servings) {
+                    CompositeFood composite = new CompositeFood(foodId(index), keywords);
+                    for (int i = 0; i < components.length; i++) {
+                        composite.addComponent(foods.get(components[i]), servings[i]);
+                    }
+                    foods.add(composite);
+                }
+            });
+        } catch (IOException e) {
+            // The sink above does no I/O
+            throw new IllegalStateException(e);
+        }
+        return foods;
+    }
+
+    // date;foodId;servings lines, entriesPerDay for each of days days from the start date
+    public void writeLog(Path file) throws IOException {
+        Random random = new Random(seed + 2);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int day = 0; day < days; day++) {
+                String date = startDate.plusDays(day).toString();
+                for (int e = 0; e < entriesPerDay; e++) {
+                    writer.write(date + ";" + foodId(sampleFood(random)) + ";" + (1 + random.nextInt(4)));
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    // CSV import fixture with the auto-detected headers name,calories,tags and quoted tag lists.
+    // Rows are named "item <i>", apart from the catalog ids.
+    public void writeCsv(Path file) throws IOException {
+        Random random = new Random(seed + 3);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("name,calories,tags");
+            writer.newLine();
+            for (int i = 0; i < importRows; i++) {
+                writer.write("item " + i + "," + calories(random) + ",\"" + String.join(",", keywords(random)) + "\"");
+                writer.newLine();
+            }
+        }
+    }
+
+    // JSON import fixture: an array of {"name","calories","tags":[..]} records named like the CSV rows
+    public void writeJson(Path file) throws IOException {
+        Random random = new Random(seed + 4);
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("[");
+            for (int i = 0; i < importRows; i++) {
+                if (i > 0) writer.write(",");
+                writer.newLine();
+                writer.write("{\"name\":\"item " + i + "\",\"calories\":" + calories(random)
+                        + ",\"tags\":[\"" + String.join("\",\"", keywords(random)) + "\"]}");
+            }
+            writer.newLine();
+            writer.write("]");
+            writer.newLine();
+        }
+    }
+
+    // Id of catalog entry index: basic foods come first, then composites
+    public String foodId(int index) {
+        return index < basicFoods ? "food" + index : "recipe" + (index - basicFoods);
+    }
+
+    public String keyword(int rank) {
+        return "kw" + rank;
+    }
+
+    // A keyword drawn with the same skew as the catalog's, e.g. for search queries
+    public String sampleKeyword(Random random) {
+        if (keywordCdf == null) keywordCdf = zipfCdf(vocabulary, keywordSkew);
+        return keyword(sample(keywordCdf, random));
+    }
+
+    // Catalog index of a food drawn by popularity
+    public int sampleFood(Random random) {
+        if (foodCdf == null) foodCdf = zipfCdf(getCatalogSize(), foodSkew);
+        return sample(foodCdf, random);
+    }
+
+    public int getCatalogSize() {
+        return basicFoods + compositeFoods;
+    }
+
+    private interface FoodSink {
+        void basic(int index, int calories, List<String> keywords) throws IOException;
+
+        void composite(int index, List<String> keywords, int[] components, int[] servings) throws IOException;
+    }
+
+    private void generateCatalog(FoodSink sink) throws IOException {
+        Random random = new Random(seed + 1);
+        for (int i = 0; i < basicFoods; i++) {
+            sink.basic(i, calories(random), keywords(random));
+        }
+        if (basicFoods == 0) return;
+
+        int levels = Math.max(1, depth);
+        int parts = Math.max(1, fanOut);
+        int previousStart = -1;
+        int previousEnd = -1;
+        for (int level = 0; level < levels; level++) {
+            int start = (int) ((long) compositeFoods * level / levels);
+            int end = (int) ((long) compositeFoods * (level + 1) / levels);
+            for (int c = start; c < end; c++) {
+                Set<Integer> chosen = new LinkedHashSet<>();
+                if (previousStart >= 0 && previousEnd > previousStart) {
+                    chosen.add(basicFoods + previousStart + random.nextInt(previousEnd - previousStart));
+                }
+                // Small catalogs may not have enough distinct foods; give up after a few tries
+                for (int tries = 0; chosen.size() < parts && tries < parts * 4; tries++) {
+                    chosen.add(random.nextInt(basicFoods));
+                }
+                int[] components = new int[chosen.size()];
+                int[] servings = new int[chosen.size()];
+                int i = 0;
+                for (int component : chosen) {
+                    components[i] = component;
+                    servings[i++] = 1 + random.nextInt(3);
+                }
+                sink.composite(basicFoods + c, keywords(random), components, servings);
+            }
+            previousStart = start;
+            previousEnd = end;
+        }
+    }
+
+    private static int calories(Random random) {
+        return 20 + random.nextInt(780);
+    }
+
+    private List<String> keywords(Random random) {
+        int count = Math.min(keywordsPerFood, vocabulary);
+        List<String> keywords = new ArrayList<>(count);
+        for (int tries = 0; keywords.size() < count && tries < count * 8; tries++) {
+            String keyword = sampleKeyword(random);
+            if (!keywords.contains(keyword)) keywords.add(keyword);
+        }
+        return keywords;
+    }
+
+    // P(rank k) proportional to 1 / (k + 1)^skew; skew 0 is uniform
+    private static double[] zipfCdf(int size, double skew) {
+        double[] cdf = new double[Math.max(size, 1)];
+        double sum = 0;
+        for (int k = 0; k < size; k++) {
+            sum += 1.0 / Math.pow(k + 1, skew);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < size; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, Random random) {
+        int pos = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(pos >= 0 ? pos : -pos - 1, cdf.length - 1);
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setBasicFoods(int basicFoods) {
+        this.basicFoods = basicFoods;
+        foodCdf = null;
+    }
+
+    public void setCompositeFoods(int compositeFoods) {
+        this.compositeFoods = compositeFoods;
+        foodCdf = null;
+    }
+
+    public void setVocabulary(int vocabulary) {
+        this.vocabulary = vocabulary;
+        keywordCdf = null;
+    }
+
+    public void setKeywordsPerFood(int keywordsPerFood) {
+        this.keywordsPerFood = keywordsPerFood;
+    }
+
+    public void setKeywordSkew(double keywordSkew) {
+        this.keywordSkew = keywordSkew;
+        keywordCdf = null;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public void setFanOut(int fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    public void setDays(int days) {
+        this.days = days;
+    }
+
+    public void setEntriesPerDay(int entriesPerDay) {
+        this.entriesPerDay = entriesPerDay;
+    }
+
+    public void setFoodSkew(double foodSkew) {
+        this.foodSkew = foodSkew;
+        foodCdf = null;
+    }
+
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    public void setImportRows(int importRows) {
+        this.importRows = importRows;
+    }
+}
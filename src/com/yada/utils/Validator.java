@@ -12,6 +12,11 @@ public class Validator {
         return id != null && id.matches("[a-zA-Z0-9_ ]+");
     }
 
+    // User ids name a data directory: letters, numbers, underscores and dashes only
+    public static boolean isValidUserId(String userId) {
+        return userId != null && userId.matches("[a-zA-Z0-9_-]{1,64}");
+    }
+
     // Keywords: allow only letters, numbers, underscores; no punctuation
     public static boolean isValidKeyword(String keyword) {
         return keyword != null && keyword.matches("[a-zA-Z0-9_ ]+") && keyword.length() <= 30;
@@ -45,14 +50,22 @@ public class Validator {
         return level >= 1.2 && level <= 2.5;
     }
 
-    // Date must comply with YYYY-MM-DD ISO format
+    // Years a log date may fall in; the calorie index keeps a slot for every day of the span
+    // a log covers, so dates far apart must not get in
+    public static final int MIN_YEAR = 1900;
+    public static final int MAX_YEAR = 2200;
+
+    // Date must comply with YYYY-MM-DD ISO format and lie between MIN_YEAR and MAX_YEAR
     public static boolean isValidDate(String dateStr) {
         try {
-            LocalDate.parse(dateStr, DateTimeFormatter.ISO_LOCAL_DATE);
-            return true;
-        } catch (DateTimeParseException e) {
+            return isValidDate(LocalDate.parse(dateStr, DateTimeFormatter.ISO_LOCAL_DATE));
+        } catch (DateTimeParseException | NullPointerException e) {
             return false;
         }
     }
+
+    public static boolean isValidDate(LocalDate date) {
+        return date.getYear() >= MIN_YEAR && date.getYear() <= MAX_YEAR;
+    }
 }
 
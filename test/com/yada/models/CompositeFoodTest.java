@@ -0,0 +1,44 @@
+package com.yada.models;
+
+import com.yada.services.ListLogStore;
+import com.yada.services.LogManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompositeFoodTest {
+    @TempDir
+    Path dir;
+
+    // Two recipes share one leaf under a third. The log's listener reads the top total while
+    // the change is being propagated, so it must not see either middle recipe still stale.
+    @Test
+    void diamondDependencyStaysFreshAfterLeafChange() {
+        Food leaf = new Food("diamond leaf", List.of("test"), 10);
+        CompositeFood left = new CompositeFood("diamond left", List.of("test"));
+        left.addComponent(leaf, 1);
+        CompositeFood right = new CompositeFood("diamond right", List.of("test"));
+        right.addComponent(leaf, 1);
+        CompositeFood top = new CompositeFood("diamond top", List.of("test"));
+        top.addComponent(left, 1);
+        top.addComponent(right, 1);
+
+        LogManager log = new LogManager(new ListLogStore(), dir.resolve("log.txt").toString());
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        log.addLogEntry(day, new LogEntry(top, 1));
+        assertEquals(20, top.getCaloriesPerServing());
+        assertEquals(20, log.getDailyCalories(day));
+
+        leaf.setCaloriesPerServing(100);
+
+        assertEquals(100, left.getCaloriesPerServing());
+        assertEquals(100, right.getCaloriesPerServing());
+        assertEquals(200, top.getCaloriesPerServing());
+        assertEquals(200, log.getDailyCalories(day));
+    }
+}
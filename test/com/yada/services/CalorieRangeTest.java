@@ -0,0 +1,108 @@
+package com.yada.services;
+
+import com.yada.models.Food;
+import com.yada.models.LogEntry;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+// Range totals answered by the calorie index, for both log stores
+class CalorieRangeTest {
+    @TempDir
+    Path dir;
+
+    private final Food food = new Food("range oats", List.of("grain"), 100);
+
+    private LogManager newLog(boolean columnar) {
+        return new LogManager(columnar ? new ColumnarLogStore() : new ListLogStore(), dir.resolve("log.txt").toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void totalsAcrossMonthAndYearEdges(boolean columnar) {
+        LogManager log = newLog(columnar);
+        log.addLogEntry("2023-12-31", new LogEntry(food, 1));
+        log.addLogEntry("2024-01-01", new LogEntry(food, 2));
+        log.addLogEntry("2024-01-31", new LogEntry(food, 3));
+        log.addLogEntry("2024-02-01", new LogEntry(food, 4));
+        log.addLogEntry("2024-02-29", new LogEntry(food, 5));
+        log.addLogEntry("2024-03-01", new LogEntry(food, 6));
+
+        assertEquals(100, total(log, "2023-01-01", "2023-12-31"));
+        assertEquals(300, total(log, "2023-12-31", "2024-01-01"));
+        assertEquals(500, total(log, "2024-01-01", "2024-01-31"));
+        assertEquals(700, total(log, "2024-01-31", "2024-02-01"));
+        assertEquals(900, total(log, "2024-02-01", "2024-02-29"));
+        assertEquals(1100, total(log, "2024-02-29", "2024-03-01"));
+        assertEquals(2100, total(log, "2023-12-31", "2024-03-01"));
+        assertEquals(0, total(log, "2024-01-02", "2024-01-30"));
+        assertEquals(0, total(log, "2024-03-01", "2024-02-29"));
+        // Bounds far outside the loggable years are clamped, not allocated for
+        assertEquals(2100, log.getTotalCalories(LocalDate.MIN, LocalDate.MAX));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void totalsFollowUndoAndRedo(boolean columnar) {
+        LogManager log = newLog(columnar);
+        UndoManager undo = new UndoManager();
+        log.addLogEntry("2024-01-31", new LogEntry(food, 1));
+        LogEntry added = log.addLogEntry("2024-02-01", new LogEntry(food, 2));
+        undo.addCommand(new AddLogEntryCommand(log, "2024-02-01", added));
+        LogEntry removed = log.deleteLogEntryById("2024-01-31", log.getLogEntries("2024-01-31").get(0).getId());
+        undo.addCommand(new DeleteLogEntryCommand(log, "2024-01-31", removed));
+        assertEquals(200, total(log, "2024-01-01", "2024-02-29"));
+
+        undo.undoLast();
+        assertEquals(300, total(log, "2024-01-01", "2024-02-29"));
+        undo.undoLast();
+        assertEquals(100, total(log, "2024-01-01", "2024-02-29"));
+        assertEquals(0, total(log, "2024-02-01", "2024-02-29"));
+        undo.redoLast();
+        undo.redoLast();
+        assertEquals(200, total(log, "2024-01-01", "2024-02-29"));
+        assertEquals(0, total(log, "2024-01-01", "2024-01-31"));
+    }
+
+    // Random entries spread over years, checked against a plain sum of the daily totals
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void matchesNaiveSumOverRandomRanges(boolean columnar) {
+        LogManager log = newLog(columnar);
+        Random random = new Random(42);
+        LocalDate start = LocalDate.of(2019, 6, 15);
+        for (int i = 0; i < 2000; i++) {
+            log.addLogEntry(start.plusDays(random.nextInt(2000)), new LogEntry(food, 1 + random.nextInt(3)));
+        }
+        for (int i = 0; i < 200; i++) {
+            LocalDate from = start.plusDays(random.nextInt(2100) - 50);
+            LocalDate to = from.plusDays(random.nextInt(400));
+            long expected = 0;
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                expected += log.getDailyCalories(day);
+            }
+            assertEquals(expected, log.getTotalCalories(from, to), from + ".." + to);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void rejectsDatesOutsideLoggableYears(boolean columnar) {
+        LogManager log = newLog(columnar);
+        assertThrows(IllegalArgumentException.class, () -> log.addLogEntry("1899-12-31", new LogEntry(food, 1)));
+        assertThrows(IllegalArgumentException.class, () -> log.addLogEntry("+100000-01-01", new LogEntry(food, 1)));
+        assertEquals(0, log.getTotalCalories(LocalDate.MIN, LocalDate.MAX));
+    }
+
+    private static long total(LogManager log, String from, String to) {
+        return log.getTotalCalories(LocalDate.parse(from), LocalDate.parse(to));
+    }
+}
@@ -0,0 +1,98 @@
+package com.yada.services;
+
+import com.yada.models.Food;
+import com.yada.models.LogEntry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class LogJournalTest {
+    @TempDir
+    Path dir;
+
+    private FoodDatabase foods;
+
+    @BeforeEach
+    void setUp() {
+        foods = new FoodDatabase(dir.resolve("foods.txt").toString());
+        foods.addBasicFood(new Food("journal apple", List.of("fruit"), 80));
+        foods.addBasicFood(new Food("journal pear", List.of("fruit"), 60));
+    }
+
+    // A process killed mid-append leaves a partial last line; replay must apply every whole
+    // record before it, skip the fragment, and keep later appends apart from it
+    @Test
+    void replaySkipsTornLastRecord() throws IOException {
+        LogManager log = open();
+        log.addLogEntry("2024-03-01", new LogEntry(foods.findFoodById("journal apple"), 2));
+        log.addLogEntry("2024-03-01", new LogEntry(foods.findFoodById("journal pear"), 1));
+        log.addLogEntry("2024-03-02", new LogEntry(foods.findFoodById("journal apple"), 1));
+        log.deleteLogEntry("2024-03-01", 1);
+        log.close();
+
+        Path generation = lastGeneration();
+        Files.writeString(generation, "a;1977", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        LogManager recovered = open();
+        assertEquals(1, recovered.getLogEntries("2024-03-01").size());
+        assertEquals(1, recovered.getLogEntries("2024-03-02").size());
+        assertEquals(240, recovered.getTotalCalories(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 2)));
+
+        recovered.addLogEntry("2024-03-02", new LogEntry(foods.findFoodById("journal pear"), 3));
+        recovered.close();
+
+        LogManager reopened = open();
+        assertEquals(1, reopened.getLogEntries("2024-03-01").size());
+        assertEquals(2, reopened.getLogEntries("2024-03-02").size());
+        assertEquals(420, reopened.getTotalCalories(LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 2)));
+        reopened.close();
+    }
+
+    // Once a compaction has written the segments, its journal generations are not replayed
+    // again on top of them
+    @Test
+    void compactedRecordsAreNotReplayedTwice() {
+        LogManager log = open();
+        log.addLogEntry("2024-03-01", new LogEntry(foods.findFoodById("journal apple"), 1));
+        log.compactLogs();
+        log.addLogEntry("2024-03-01", new LogEntry(foods.findFoodById("journal pear"), 1));
+        log.close();
+
+        LogManager recovered = open();
+        assertEquals(2, recovered.getLogEntries("2024-03-01").size());
+        assertEquals(140, recovered.getDailyCalories(LocalDate.of(2024, 3, 1)));
+        recovered.close();
+    }
+
+    private LogManager open() {
+        LogManager log = new LogManager(new ListLogStore(), dir.resolve("log.txt").toString());
+        if (log.hasSavedLogs()) log.loadLogs(foods);
+        log.replayJournal(foods);
+        return log;
+    }
+
+    private Path lastGeneration() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            List<Path> generations = files
+                    .filter(file -> file.getFileName().toString().startsWith("log.txt.journal."))
+                    .sorted(Comparator.comparingLong(file -> Long.parseLong(
+                            file.getFileName().toString().substring("log.txt.journal.".length()))))
+                    .toList();
+            assertFalse(generations.isEmpty(), "no journal generation written");
+            return generations.get(generations.size() - 1);
+        }
+    }
+}
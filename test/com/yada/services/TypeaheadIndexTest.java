@@ -0,0 +1,86 @@
+package com.yada.services;
+
+import com.yada.models.Food;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TypeaheadIndexTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void removedFoodIsNotSuggested() {
+        FoodDatabase db = new FoodDatabase(dir.resolve("foods.txt").toString());
+        Food bread = new Food("banana bread", List.of("baked", "bananaish"), 300);
+        db.addBasicFood(bread);
+        db.addBasicFood(new Food("banana split", List.of("baked"), 400));
+        assertEquals(Set.of("banana bread", "banana split", "bananaish"), texts(db.suggest("banan", 10)));
+
+        List<Food> removed = db.removeFood(bread);
+
+        // Neither its id nor the keyword only it carried is offered, by completion or near miss
+        assertEquals(Set.of("banana split"), texts(db.suggest("banan", 10)));
+        assertFalse(texts(db.suggest("banana brea", 10)).contains("banana bread"));
+        assertFalse(texts(db.suggest("bananaiss", 10)).contains("bananaish"));
+        assertTrue(texts(db.suggest("bake", 10)).contains("baked"));
+
+        db.restoreFoods(removed);
+        assertEquals(Set.of("banana bread", "banana split", "bananaish"), texts(db.suggest("banan", 10)));
+    }
+
+    // A removal belongs to the version being built; indexes published before keep the term
+    @Test
+    void removalDoesNotReachPublishedVersions() {
+        TypeaheadIndex.Editor editor = TypeaheadIndex.empty().edit();
+        TypeaheadIndex.Term cherry = editor.add("cherry", null);
+        editor.add("cheese", null);
+        TypeaheadIndex before = editor.build();
+
+        TypeaheadIndex.Editor next = before.edit();
+        next.remove(cherry);
+        TypeaheadIndex after = next.build();
+
+        assertEquals(Set.of("cherry", "cheese"), texts(before.suggest("che", 10)));
+        assertEquals(Set.of("cheese"), texts(after.suggest("che", 10)));
+        assertEquals(Set.of("cheese"), texts(after.edit().build().suggest("che", 10)));
+    }
+
+    // Enough removals over several versions that segments get merged and rewritten
+    @Test
+    void suggestionsMatchLiveFoodsUnderChurn() {
+        FoodDatabase db = new FoodDatabase(dir.resolve("foods.txt").toString());
+        List<Food> foods = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            Food food = new Food("churn food " + i, List.of("churn"), 10);
+            foods.add(food);
+            db.addBasicFood(food);
+        }
+        Set<String> live = new TreeSet<>();
+        for (int i = 0; i < foods.size(); i++) {
+            if (i % 10 == 3) {
+                live.add(foods.get(i).getId());
+            } else {
+                db.removeFood(foods.get(i));
+            }
+        }
+        Set<String> suggested = texts(db.suggest("churn food", 1000));
+        suggested.remove("churn");
+        assertEquals(live, suggested);
+    }
+
+    private static Set<String> texts(List<TypeaheadIndex.Suggestion> suggestions) {
+        Set<String> texts = new TreeSet<>();
+        for (TypeaheadIndex.Suggestion suggestion : suggestions) texts.add(suggestion.getText());
+        return texts;
+    }
+}
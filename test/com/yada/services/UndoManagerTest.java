@@ -0,0 +1,148 @@
+package com.yada.services;
+
+import com.yada.models.CompositeFood;
+import com.yada.models.Food;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class UndoManagerTest {
+    @TempDir
+    Path dir;
+
+    // An import committed in several batches is one undo step, and undoing it leaves the
+    // catalog exactly as before, including foods the import skipped as duplicates
+    @Test
+    void undoOfImportRestoresCatalogExactly() throws IOException {
+        FoodDatabase db = new FoodDatabase(dir.resolve("foods.txt").toString());
+        Food rice = new Food("undo rice", List.of("grain"), 130);
+        db.addBasicFood(rice);
+        CompositeFood bowl = new CompositeFood("undo bowl", List.of("meal"));
+        bowl.addComponent(rice, 2);
+        db.addCompositeFood(bowl);
+        Map<String, String> before = catalog(db);
+
+        StringBuilder json = new StringBuilder("[{\"id\":\"UNDO RICE\",\"calories\":1}");
+        for (int i = 0; i < 10_000; i++) {
+            json.append(",{\"id\":\"imported ").append(i).append("\",\"calories\":").append(i % 500)
+                    .append(",\"keywords\":[\"bulk\"]}");
+        }
+        Path file = dir.resolve("import.json");
+        Files.writeString(file, json.append(']'), StandardCharsets.UTF_8);
+
+        UndoManager undo = new UndoManager();
+        undo.beginGroup("import");
+        db.setAdditionListener(batch -> undo.addCommand(new AddFoodsCommand(db, batch)));
+        try {
+            ImportResult result = new FoodJSONImporter().importFoods(file.toString(), db, null);
+            assertEquals(10_000, result.getImported());
+            assertEquals(1, result.getSkipped());
+        } finally {
+            db.setAdditionListener(null);
+            undo.endGroup();
+        }
+        Map<String, String> after = catalog(db);
+        assertEquals(before.size() + 10_000, after.size());
+
+        assertNotNull(undo.undoLast());
+        assertEquals(before, catalog(db));
+        assertSame(rice, db.findFoodById("undo rice"));
+        assertFalse(undo.canUndo());
+
+        undo.redoLast();
+        assertEquals(after, catalog(db));
+        undo.undoLast();
+        assertEquals(before, catalog(db));
+    }
+
+    // The ring keeps the newest capacity entries; a new command ends the redo chain
+    @Test
+    void ringDropsOldestAndNewCommandClearsRedo() {
+        List<String> applied = new ArrayList<>();
+        UndoManager undo = new UndoManager(3, Long.MAX_VALUE);
+        for (int i = 1; i <= 5; i++) undo.addCommand(new Recorded("c" + i, applied));
+
+        assertEquals("c5", undo.undoLast().describe());
+        assertEquals("c4", undo.undoLast().describe());
+        assertEquals("c3", undo.undoLast().describe());
+        assertNull(undo.undoLast());
+
+        undo.redoLast();
+        undo.addCommand(new Recorded("c6", applied));
+        assertFalse(undo.canRedo());
+        assertEquals("c6", undo.undoLast().describe());
+        assertEquals("c3", undo.undoLast().describe());
+        assertNull(undo.undoLast());
+        assertEquals(List.of("-c5", "-c4", "-c3", "+c3", "-c6", "-c3"), applied);
+    }
+
+    // Old entries also go once the history outgrows its memory cap, but never the newest
+    @Test
+    void memoryCapDropsOldestButKeepsNewest() {
+        List<String> applied = new ArrayList<>();
+        UndoManager undo = new UndoManager(100, 250);
+        for (int i = 1; i <= 4; i++) undo.addCommand(new Recorded("c" + i, applied));
+        assertEquals("c4", undo.undoLast().describe());
+        assertEquals("c3", undo.undoLast().describe());
+        assertNull(undo.undoLast());
+
+        UndoManager tiny = new UndoManager(100, 10);
+        tiny.addCommand(new Recorded("big", applied));
+        assertEquals("big", tiny.undoLast().describe());
+    }
+
+    // Every food as id -> calories, keywords and components, sorted by id
+    private static Map<String, String> catalog(FoodDatabase db) {
+        Map<String, String> foods = new TreeMap<>();
+        for (Food food : db.getAllFoods()) {
+            String components = food instanceof CompositeFood composite ? composite.getComponents().entrySet().stream()
+                    .map(entry -> entry.getKey().getId() + ":" + entry.getValue()).sorted().toList().toString() : "";
+            foods.put(food.getId(), food.getCaloriesPerServing() + ";" + food.getKeywords() + ";" + components);
+        }
+        return foods;
+    }
+
+    private static final class Recorded implements Command {
+        private final String name;
+        private final List<String> applied;
+
+        Recorded(String name, List<String> applied) {
+            this.name = name;
+            this.applied = applied;
+        }
+
+        @Override
+        public void undo() {
+            applied.add("-" + name);
+        }
+
+        @Override
+        public void redo() {
+            applied.add("+" + name);
+        }
+
+        @Override
+        public String describe() {
+            return name;
+        }
+
+        @Override
+        public long footprint() {
+            return 100;
+        }
+    }
+}